@@ -0,0 +1,105 @@
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Wall-clock time during which at least one build, test run or debug session was active, per category.
+ *
+ * Updated from execution and build listeners without taking the tracker's monitor.
+ * Every update is O(1) and lock-free, so many concurrent run configurations don't contend.
+ * Concurrent activities of the same category are counted once.
+ *
+ * Each category is one word: the number of activities in progress in the top {@link #COUNT_BITS} bits and a
+ * signed time offset in the rest. While nothing is active the offset is the total, while something is, it is
+ * the total minus the time the first activity started, so the total is offset plus now. Starting and finishing
+ * is then a single compare-and-set, and readers always see a count and an offset which belong together.
+ */
+final class TimeTrackerActivityCounters {
+
+    enum Category {
+        BUILD,
+        TEST,
+        DEBUG
+    }
+
+    private static final Category[] CATEGORIES = Category.values();
+
+    private static final int COUNT_BITS = 19;
+    private static final int OFFSET_BITS = Long.SIZE - COUNT_BITS;
+    private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+
+    private final AtomicLongArray state = new AtomicLongArray(CATEGORIES.length);
+
+    void started(@NotNull Category category, long now) {
+        final int i = category.ordinal();
+        long current;
+        long updated;
+        do {
+            current = state.get(i);
+            final long count = count(current);
+            if (count == (1L << COUNT_BITS) - 1) {
+                return;
+            }
+            updated = pack(count + 1, count == 0 ? offset(current) - now : offset(current));
+        } while (!state.compareAndSet(i, current, updated));
+    }
+
+    void finished(@NotNull Category category, long now) {
+        final int i = category.ordinal();
+        long current;
+        long updated;
+        do {
+            current = state.get(i);
+            final long count = count(current);
+            if (count == 0) {
+                // Finished something that started before we were listening
+                return;
+            }
+            updated = pack(count - 1, count == 1 ? offset(current) + now : offset(current));
+        } while (!state.compareAndSet(i, current, updated));
+    }
+
+    /** @return true if anything of any category is running right now */
+    boolean isAnyActive() {
+        for (int i = 0; i < CATEGORIES.length; i++) {
+            if (count(state.get(i)) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    long getTotalMs(@NotNull Category category, long now) {
+        final long current = state.get(category.ordinal());
+        return Math.max(0L, count(current) > 0 ? offset(current) + now : offset(current));
+    }
+
+    /** Set the total as of now. Activities in progress are counted on top of it from now on. */
+    void setTotalMs(@NotNull Category category, long ms, long now) {
+        final int i = category.ordinal();
+        final long totalMs = Math.max(0L, ms);
+        long current;
+        do {
+            current = state.get(i);
+        } while (!state.compareAndSet(i, current, pack(count(current), count(current) > 0 ? totalMs - now : totalMs)));
+    }
+
+    /** Reset totals. Activities in progress are counted from now on. */
+    void reset(long now) {
+        for (Category category : CATEGORIES) {
+            setTotalMs(category, 0L, now);
+        }
+    }
+
+    private static long pack(long count, long offset) {
+        return (count << OFFSET_BITS) | (offset & OFFSET_MASK);
+    }
+
+    private static long count(long state) {
+        return state >>> OFFSET_BITS;
+    }
+
+    private static long offset(long state) {
+        return (state << COUNT_BITS) >> COUNT_BITS;
+    }
+}
@@ -0,0 +1,366 @@
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed set of non-negative ints, in the style of roaring bitmaps.
+ *
+ * Values are grouped by their high 16 bits. Each group is stored either as a sorted {@code char[]}
+ * (sparse, up to {@link #ARRAY_MAX} values) or as a 65536 bit {@code long[]} (dense).
+ * Appending in ascending order, which is how session ordinals arrive, is amortized O(1).
+ * Set operations work container by container: two arrays are merged, an array against bits is a lookup
+ * per value, and only two bit containers are combined word by word.
+ */
+final class TimeTrackerBitmap {
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int WORDS = 1 << 10;
+
+    private char[] keys = new char[4];
+    /** Either char[] sorted values, or long[WORDS] bits. */
+    private Object[] containers = new Object[4];
+    /** Only used for char[] containers, number of used values. */
+    private int[] sizes = new int[4];
+    private int count = 0;
+
+    void add(int value) {
+        final char key = (char) (value >>> 16);
+        final char low = (char) value;
+        int index;
+        if (count > 0 && keys[count - 1] == key) {
+            index = count - 1;
+        } else {
+            index = Arrays.binarySearch(keys, 0, count, key);
+            if (index < 0) {
+                index = -index - 1;
+                insertContainer(index, key, new char[8], 0);
+            }
+        }
+
+        final Object container = containers[index];
+        if (container instanceof long[]) {
+            ((long[]) container)[low >>> 6] |= 1L << low;
+            return;
+        }
+
+        char[] values = (char[]) container;
+        final int size = sizes[index];
+        int position;
+        if (size == 0 || values[size - 1] < low) {
+            position = size;
+        } else {
+            position = Arrays.binarySearch(values, 0, size, low);
+            if (position >= 0) {
+                return;
+            }
+            position = -position - 1;
+        }
+
+        if (size == ARRAY_MAX) {
+            final long[] bits = toBits(values, size);
+            bits[low >>> 6] |= 1L << low;
+            containers[index] = bits;
+            return;
+        }
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.min(ARRAY_MAX, size * 2));
+            containers[index] = values;
+        }
+        System.arraycopy(values, position, values, position + 1, size - position);
+        values[position] = low;
+        sizes[index] = size + 1;
+    }
+
+    private void insertContainer(int index, char key, Object container, int size) {
+        if (count == keys.length) {
+            final int capacity = count * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+        }
+        System.arraycopy(keys, index, keys, index + 1, count - index);
+        System.arraycopy(containers, index, containers, index + 1, count - index);
+        System.arraycopy(sizes, index, sizes, index + 1, count - index);
+        keys[index] = key;
+        containers[index] = container;
+        sizes[index] = size;
+        count++;
+    }
+
+    /** Append a container with key greater than any present, used to build results of set operations. */
+    private void appendContainer(char key, long[] bits) {
+        int cardinality = 0;
+        for (long word : bits) {
+            cardinality += Long.bitCount(word);
+        }
+        if (cardinality == 0) {
+            return;
+        }
+        if (cardinality > ARRAY_MAX) {
+            insertContainer(count, key, bits, 0);
+            return;
+        }
+        final char[] values = new char[cardinality];
+        int size = 0;
+        for (int w = 0; w < WORDS; w++) {
+            long word = bits[w];
+            while (word != 0) {
+                values[size++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        insertContainer(count, key, values, size);
+    }
+
+    /** Bitmap of all values in [0, size). */
+    @NotNull
+    static TimeTrackerBitmap range(int size) {
+        final TimeTrackerBitmap result = new TimeTrackerBitmap();
+        for (int high = 0; high << 16 < size && high <= Character.MAX_VALUE; high++) {
+            final int inContainer = Math.min(1 << 16, size - (high << 16));
+            final long[] bits = new long[WORDS];
+            Arrays.fill(bits, 0, inContainer >>> 6, -1L);
+            if ((inContainer & 63) != 0) {
+                bits[inContainer >>> 6] = (1L << inContainer) - 1;
+            }
+            result.appendContainer((char) high, bits);
+        }
+        return result;
+    }
+
+    @NotNull
+    private static long[] toBits(@NotNull char[] values, int size) {
+        final long[] bits = new long[WORDS];
+        for (int i = 0; i < size; i++) {
+            bits[values[i] >>> 6] |= 1L << values[i];
+        }
+        return bits;
+    }
+
+    /** Append a sorted array container with key greater than any present. */
+    private void appendValues(char key, @NotNull char[] values, int size) {
+        if (size > ARRAY_MAX) {
+            appendContainer(key, toBits(values, size));
+        } else if (size > 0) {
+            insertContainer(count, key, values, size);
+        }
+    }
+
+    /** Append a copy of container at index of source. */
+    private void appendCopy(@NotNull TimeTrackerBitmap source, int index) {
+        final Object container = source.containers[index];
+        if (container instanceof long[]) {
+            insertContainer(count, source.keys[index], ((long[]) container).clone(), 0);
+        } else {
+            final int size = source.sizes[index];
+            insertContainer(count, source.keys[index], Arrays.copyOf((char[]) container, size), size);
+        }
+    }
+
+    private static boolean contains(@NotNull long[] bits, char value) {
+        return (bits[value >>> 6] & (1L << value)) != 0;
+    }
+
+    @NotNull
+    TimeTrackerBitmap copy() {
+        final TimeTrackerBitmap result = new TimeTrackerBitmap();
+        for (int i = 0; i < count; i++) {
+            result.appendCopy(this, i);
+        }
+        return result;
+    }
+
+    @NotNull
+    TimeTrackerBitmap and(@NotNull TimeTrackerBitmap other) {
+        final TimeTrackerBitmap result = new TimeTrackerBitmap();
+        int i = 0, j = 0;
+        while (i < count && j < other.count) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.appendAnd(keys[i], containers[i], sizes[i], other.containers[j], other.sizes[j]);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    private void appendAnd(char key, Object a, int aSize, Object b, int bSize) {
+        if (a instanceof long[] && b instanceof long[]) {
+            final long[] bits = ((long[]) a).clone();
+            final long[] otherBits = (long[]) b;
+            for (int w = 0; w < WORDS; w++) bits[w] &= otherBits[w];
+            appendContainer(key, bits);
+        } else if (a instanceof long[] || b instanceof long[]) {
+            final long[] bits = (long[]) (a instanceof long[] ? a : b);
+            final char[] values = (char[]) (a instanceof long[] ? b : a);
+            final int size = a instanceof long[] ? bSize : aSize;
+            final char[] result = new char[size];
+            int n = 0;
+            for (int v = 0; v < size; v++) {
+                if (contains(bits, values[v])) result[n++] = values[v];
+            }
+            appendValues(key, result, n);
+        } else {
+            final char[] x = (char[]) a;
+            final char[] y = (char[]) b;
+            final char[] result = new char[Math.min(aSize, bSize)];
+            int n = 0, p = 0, q = 0;
+            while (p < aSize && q < bSize) {
+                if (x[p] < y[q]) {
+                    p++;
+                } else if (x[p] > y[q]) {
+                    q++;
+                } else {
+                    result[n++] = x[p++];
+                    q++;
+                }
+            }
+            appendValues(key, result, n);
+        }
+    }
+
+    @NotNull
+    TimeTrackerBitmap or(@NotNull TimeTrackerBitmap other) {
+        final TimeTrackerBitmap result = new TimeTrackerBitmap();
+        int i = 0, j = 0;
+        while (i < count || j < other.count) {
+            if (j >= other.count || (i < count && keys[i] < other.keys[j])) {
+                result.appendCopy(this, i);
+                i++;
+            } else if (i >= count || keys[i] > other.keys[j]) {
+                result.appendCopy(other, j);
+                j++;
+            } else {
+                result.appendOr(keys[i], containers[i], sizes[i], other.containers[j], other.sizes[j]);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    private void appendOr(char key, Object a, int aSize, Object b, int bSize) {
+        if (a instanceof long[] || b instanceof long[]) {
+            final long[] bits = ((long[]) (a instanceof long[] ? a : b)).clone();
+            if (a instanceof long[] && b instanceof long[]) {
+                final long[] otherBits = (long[]) b;
+                for (int w = 0; w < WORDS; w++) bits[w] |= otherBits[w];
+            } else {
+                final char[] values = (char[]) (a instanceof long[] ? b : a);
+                final int size = a instanceof long[] ? bSize : aSize;
+                for (int v = 0; v < size; v++) bits[values[v] >>> 6] |= 1L << values[v];
+            }
+            appendContainer(key, bits);
+        } else {
+            final char[] x = (char[]) a;
+            final char[] y = (char[]) b;
+            final char[] result = new char[aSize + bSize];
+            int n = 0, p = 0, q = 0;
+            while (p < aSize || q < bSize) {
+                if (q >= bSize || (p < aSize && x[p] < y[q])) {
+                    result[n++] = x[p++];
+                } else if (p >= aSize || x[p] > y[q]) {
+                    result[n++] = y[q++];
+                } else {
+                    result[n++] = x[p++];
+                    q++;
+                }
+            }
+            appendValues(key, result, n);
+        }
+    }
+
+    @NotNull
+    TimeTrackerBitmap andNot(@NotNull TimeTrackerBitmap other) {
+        final TimeTrackerBitmap result = new TimeTrackerBitmap();
+        int j = 0;
+        for (int i = 0; i < count; i++) {
+            while (j < other.count && other.keys[j] < keys[i]) {
+                j++;
+            }
+            if (j < other.count && other.keys[j] == keys[i]) {
+                result.appendAndNot(keys[i], containers[i], sizes[i], other.containers[j], other.sizes[j]);
+            } else {
+                result.appendCopy(this, i);
+            }
+        }
+        return result;
+    }
+
+    private void appendAndNot(char key, Object a, int aSize, Object b, int bSize) {
+        if (a instanceof long[]) {
+            final long[] bits = ((long[]) a).clone();
+            if (b instanceof long[]) {
+                final long[] otherBits = (long[]) b;
+                for (int w = 0; w < WORDS; w++) bits[w] &= ~otherBits[w];
+            } else {
+                final char[] values = (char[]) b;
+                for (int v = 0; v < bSize; v++) bits[values[v] >>> 6] &= ~(1L << values[v]);
+            }
+            appendContainer(key, bits);
+            return;
+        }
+        final char[] x = (char[]) a;
+        final char[] result = new char[aSize];
+        int n = 0;
+        if (b instanceof long[]) {
+            final long[] bits = (long[]) b;
+            for (int p = 0; p < aSize; p++) {
+                if (!contains(bits, x[p])) result[n++] = x[p];
+            }
+        } else {
+            final char[] y = (char[]) b;
+            int q = 0;
+            for (int p = 0; p < aSize; p++) {
+                while (q < bSize && y[q] < x[p]) {
+                    q++;
+                }
+                if (q >= bSize || y[q] != x[p]) result[n++] = x[p];
+            }
+        }
+        appendValues(key, result, n);
+    }
+
+    /** Visit all values in ascending order. */
+    void forEach(@NotNull IntConsumer consumer) {
+        for (int i = 0; i < count; i++) {
+            final int high = keys[i] << 16;
+            final Object container = containers[i];
+            if (container instanceof long[]) {
+                final long[] bits = (long[]) container;
+                for (int w = 0; w < WORDS; w++) {
+                    long word = bits[w];
+                    while (word != 0) {
+                        consumer.accept(high | ((w << 6) + Long.numberOfTrailingZeros(word)));
+                        word &= word - 1;
+                    }
+                }
+            } else {
+                final char[] values = (char[]) container;
+                for (int v = 0; v < sizes[i]; v++) {
+                    consumer.accept(high | values[v]);
+                }
+            }
+        }
+    }
+
+    int cardinality() {
+        int result = 0;
+        for (int i = 0; i < count; i++) {
+            final Object container = containers[i];
+            if (container instanceof long[]) {
+                for (long word : (long[]) container) {
+                    result += Long.bitCount(word);
+                }
+            } else {
+                result += sizes[i];
+            }
+        }
+        return result;
+    }
+}
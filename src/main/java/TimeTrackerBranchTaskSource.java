@@ -0,0 +1,32 @@
+import com.intellij.dvcs.repo.Repository;
+import com.intellij.dvcs.repo.VcsRepositoryManager;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Tags sessions with the branch of the repository the edited file belongs to, as {@code branch:<name>}.
+ * Doesn't define tasks, those come from {@link TimeTrackerChangeListTaskSource}.
+ */
+public final class TimeTrackerBranchTaskSource implements TimeTrackerTaskSource {
+
+    @Nullable
+    @Override
+    public String follow(@NotNull Project project, @NotNull TimeTrackerComponent tracker, @NotNull Disposable parent) {
+        return null;
+    }
+
+    @Override
+    public void addSessionTags(@NotNull Project project, @NotNull VirtualFile file, @NotNull List<String> tags) {
+        // The quick lookup doesn't trigger detection of repositories, which is too slow for EDT
+        final Repository repository = VcsRepositoryManager.getInstance(project).getRepositoryForFileQuick(file);
+        final String branch = repository == null ? null : repository.getCurrentBranchName();
+        if (branch != null) {
+            tags.add("branch:" + branch);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+import org.jetbrains.annotations.NotNull;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.TemporalAdjusters;
+import java.time.temporal.WeekFields;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Daily and weekly budgets ("day<8h": warn when more than 8 hours are counted today)
+ * and goals ("day>4h": tell when 4 hours are reached).
+ *
+ * Instead of checking every rule on every tick, the earliest instant at which any rule could be crossed
+ * is computed whenever counting starts, stops or changes, so the tick only compares it with the current time.
+ */
+final class TimeTrackerBudgets {
+
+    private static final Logger LOG = Logger.getLogger(TimeTrackerBudgets.class.getName());
+
+    private static final Pattern RULE = Pattern.compile("\\s*(day|week)\\s*([<>])\\s*(?:(\\d+)\\s*h)?\\s*(?:(\\d+)\\s*m)?\\s*");
+
+    enum Period {
+        DAY,
+        WEEK
+    }
+
+    static final class Rule {
+        final Period period;
+        /** Budgets warn when exceeded, goals congratulate when reached. */
+        final boolean goal;
+        final long thresholdMs;
+
+        Rule(@NotNull Period period, boolean goal, long thresholdMs) {
+            this.period = period;
+            this.goal = goal;
+            this.thresholdMs = thresholdMs;
+        }
+    }
+
+    private final ZoneId zone;
+    private final DayOfWeek firstDayOfWeek;
+
+    private Rule[] rules = new Rule[0];
+    private boolean[] fired = new boolean[0];
+
+    private long dayStartMs = Long.MAX_VALUE;
+    private long dayEndMs = Long.MIN_VALUE;
+    private long weekStartMs = Long.MAX_VALUE;
+    private long weekEndMs = Long.MIN_VALUE;
+    private long dayCountedMs = 0;
+    private long weekCountedMs = 0;
+
+    private long nextDeadlineMs = Long.MAX_VALUE;
+
+    TimeTrackerBudgets(@NotNull ZoneId zone) {
+        this(zone, WeekFields.of(Locale.getDefault()).getFirstDayOfWeek());
+    }
+
+    TimeTrackerBudgets(@NotNull ZoneId zone, @NotNull DayOfWeek firstDayOfWeek) {
+        this.zone = zone;
+        this.firstDayOfWeek = firstDayOfWeek;
+    }
+
+    /**
+     * Parse comma separated rules, like {@code "day<8h, week<40h, day>4h30m"}. Invalid rules are skipped.
+     * Rules already crossed in the current period are not reported again.
+     */
+    void setRules(@NotNull String spec) {
+        final List<Rule> parsed = new ArrayList<>();
+        for (String part : spec.split(",")) {
+            if (part.trim().isEmpty()) {
+                continue;
+            }
+            final Matcher matcher = RULE.matcher(part);
+            if (!matcher.matches() || (matcher.group(3) == null && matcher.group(4) == null)) {
+                LOG.warning("Invalid budget rule: " + part);
+                continue;
+            }
+            final long hours = matcher.group(3) == null ? 0 : Long.parseLong(matcher.group(3));
+            final long minutes = matcher.group(4) == null ? 0 : Long.parseLong(matcher.group(4));
+            parsed.add(new Rule(
+                    "day".equals(matcher.group(1)) ? Period.DAY : Period.WEEK,
+                    ">".equals(matcher.group(2)),
+                    (hours * 60 + minutes) * 60_000L));
+        }
+        rules = parsed.toArray(new Rule[0]);
+        fired = new boolean[rules.length];
+        markCrossedAsFired();
+    }
+
+    /** Restore counters of the periods which contain {@code now}. Counters of other periods are dropped. */
+    void restore(long now, long dayStartMs, long dayCountedMs, long weekStartMs, long weekCountedMs) {
+        roll(now);
+        this.dayCountedMs = dayStartMs == this.dayStartMs ? dayCountedMs : 0L;
+        this.weekCountedMs = weekStartMs == this.weekStartMs ? weekCountedMs : 0L;
+        markCrossedAsFired();
+    }
+
+    private void markCrossedAsFired() {
+        for (int i = 0; i < rules.length; i++) {
+            fired[i] = countedMs(rules[i].period) >= rules[i].thresholdMs;
+        }
+    }
+
+    /**
+     * Count interval of time, split between periods it falls into.
+     * Periods only move forward: intervals counted in late may fall before the current day or week,
+     * those pieces are dropped from the periods they precede.
+     */
+    void count(long startMs, long endMs) {
+        while (startMs < endMs) {
+            roll(startMs);
+            final long segmentEndMs;
+            if (startMs < weekStartMs) {
+                segmentEndMs = Math.min(endMs, weekStartMs);
+            } else if (startMs < dayStartMs) {
+                segmentEndMs = Math.min(endMs, dayStartMs);
+                weekCountedMs += segmentEndMs - startMs;
+            } else {
+                segmentEndMs = Math.min(endMs, Math.min(dayEndMs, weekEndMs));
+                dayCountedMs += segmentEndMs - startMs;
+                weekCountedMs += segmentEndMs - startMs;
+            }
+            startMs = segmentEndMs;
+        }
+    }
+
+    /** Move to the periods which contain given instant, if it is past the current ones. */
+    private void roll(long now) {
+        if (now < dayEndMs) {
+            return;
+        }
+        final LocalDate day = Instant.ofEpochMilli(now).atZone(zone).toLocalDate();
+        dayStartMs = day.atStartOfDay(zone).toInstant().toEpochMilli();
+        dayEndMs = day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        dayCountedMs = 0;
+
+        final LocalDate weekStart = day.with(TemporalAdjusters.previousOrSame(firstDayOfWeek));
+        final long newWeekStartMs = weekStart.atStartOfDay(zone).toInstant().toEpochMilli();
+        final boolean weekRolled = newWeekStartMs != weekStartMs;
+        if (weekRolled) {
+            weekStartMs = newWeekStartMs;
+            weekEndMs = weekStart.plusWeeks(1).atStartOfDay(zone).toInstant().toEpochMilli();
+            weekCountedMs = 0;
+        }
+
+        for (int i = 0; i < rules.length; i++) {
+            if (rules[i].period == Period.DAY || weekRolled) {
+                fired[i] = false;
+            }
+        }
+    }
+
+    private long countedMs(@NotNull Period period) {
+        return period == Period.DAY ? dayCountedMs : weekCountedMs;
+    }
+
+    /**
+     * Precompute when the next rule could be crossed.
+     * @param runningSinceMs start of the segment being counted now, not yet passed to {@link #count(long, long)}, or -1 if nothing is being counted
+     */
+    void reschedule(long now, long runningSinceMs) {
+        if (runningSinceMs < 0) {
+            nextDeadlineMs = Long.MAX_VALUE;
+            return;
+        }
+        roll(runningSinceMs);
+        final long dayInProgressMs = Math.max(0L, now - Math.max(runningSinceMs, dayStartMs));
+        final long weekInProgressMs = Math.max(0L, now - Math.max(runningSinceMs, weekStartMs));
+        long next = Math.min(dayEndMs, weekEndMs);
+        for (int i = 0; i < rules.length; i++) {
+            if (!fired[i]) {
+                final long inProgressMs = rules[i].period == Period.DAY ? dayInProgressMs : weekInProgressMs;
+                next = Math.min(next, now + rules[i].thresholdMs - countedMs(rules[i].period) - inProgressMs);
+            }
+        }
+        nextDeadlineMs = next;
+    }
+
+    /** Earliest instant at which {@link #fireCrossed(Consumer)} has something to do, or at which periods roll over. */
+    long getNextDeadlineMs() {
+        return nextDeadlineMs;
+    }
+
+    /** Report rules crossed by counted time. Call {@link #count(long, long)} with everything counted so far first. */
+    void fireCrossed(@NotNull Consumer<Rule> consumer) {
+        for (int i = 0; i < rules.length; i++) {
+            if (!fired[i] && countedMs(rules[i].period) >= rules[i].thresholdMs) {
+                fired[i] = true;
+                consumer.accept(rules[i]);
+            }
+        }
+    }
+
+    long getDayStartMs() {
+        return dayStartMs;
+    }
+
+    long getDayCountedMs() {
+        return dayCountedMs;
+    }
+
+    long getWeekStartMs() {
+        return weekStartMs;
+    }
+
+    long getWeekCountedMs() {
+        return weekCountedMs;
+    }
+}
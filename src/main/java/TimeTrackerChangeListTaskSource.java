@@ -0,0 +1,33 @@
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vcs.changes.ChangeList;
+import com.intellij.openapi.vcs.changes.ChangeListAdapter;
+import com.intellij.openapi.vcs.changes.ChangeListManager;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The active changelist is the task.
+ */
+public final class TimeTrackerChangeListTaskSource implements TimeTrackerTaskSource {
+
+    @Nullable
+    @Override
+    public String follow(@NotNull Project project, @NotNull TimeTrackerComponent tracker, @NotNull Disposable parent) {
+        final ChangeListManager changeListManager = ChangeListManager.getInstance(project);
+        changeListManager.addChangeListListener(new ChangeListAdapter() {
+            @Override
+            public void defaultListChanged(ChangeList oldDefaultList, ChangeList newDefaultList) {
+                if (newDefaultList != null) {
+                    tracker.setActiveTask(newDefaultList.getName());
+                }
+            }
+
+            @Override
+            public void changeListRenamed(ChangeList list, String oldName) {
+                tracker.renameTask(oldName, list.getName());
+            }
+        }, parent);
+        return changeListManager.getDefaultListName();
+    }
+}
@@ -0,0 +1,60 @@
+import com.intellij.openapi.vcs.CheckinProjectPanel;
+import com.intellij.openapi.vcs.changes.CommitContext;
+import com.intellij.openapi.vcs.checkin.CheckinHandler;
+import com.intellij.openapi.vcs.checkin.CheckinHandlerFactory;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Stamps each commit with the time tracked since the previous one, as a {@code Time-Tracked:} trailer.
+ */
+public final class TimeTrackerCheckinHandlerFactory extends CheckinHandlerFactory {
+
+    static final String TRAILER = "Time-Tracked: ";
+
+    /** Don't stamp commits with less than a minute of work, it is mostly noise. */
+    private static final long MIN_STAMPED_MS = 60_000L;
+
+    @NotNull
+    @Override
+    public CheckinHandler createHandler(@NotNull CheckinProjectPanel panel, @NotNull CommitContext commitContext) {
+        return new CheckinHandler() {
+
+            private long deltaMs = 0;
+            /** Only stamped time counts as committed, shorter work carries over to the next commit. */
+            private boolean stamped = false;
+
+            @Override
+            public ReturnResult beforeCheckin() {
+                final TimeTrackerComponent component = TimeTrackerComponent.getInstance(panel.getProject());
+                deltaMs = component.getTimeSinceLastCommitMs();
+                final String message = withoutTrailer(panel.getCommitMessage());
+                stamped = deltaMs >= MIN_STAMPED_MS;
+                if (stamped) {
+                    panel.setCommitMessage(message + "\n\n" + TRAILER + TimeTrackerComponent.millisecondsToString(deltaMs));
+                } else if (!message.equals(panel.getCommitMessage())) {
+                    panel.setCommitMessage(message);
+                }
+                return ReturnResult.COMMIT;
+            }
+
+            @Override
+            public void checkinSuccessful() {
+                if (!stamped) {
+                    return;
+                }
+                final TimeTrackerComponent component = TimeTrackerComponent.getInstance(panel.getProject());
+                component.commitCheckpoint(deltaMs, panel.getCommitMessage());
+            }
+        };
+    }
+
+    /** Remove trailer added by previous, failed, attempt to commit. */
+    @NotNull
+    private static String withoutTrailer(@NotNull String message) {
+        final int trailer = message.lastIndexOf("\n\n" + TRAILER);
+        if (trailer >= 0 && message.indexOf('\n', trailer + 2) < 0) {
+            return message.substring(0, trailer);
+        }
+        return message;
+    }
+}
@@ -1,8 +1,18 @@
+import com.intellij.AppTopics;
+import com.intellij.execution.ExecutionListener;
+import com.intellij.execution.ExecutionManager;
+import com.intellij.execution.RunManager;
+import com.intellij.execution.RunnerAndConfigurationSettings;
+import com.intellij.execution.executors.DefaultDebugExecutor;
+import com.intellij.execution.process.ProcessHandler;
+import com.intellij.execution.runners.ExecutionEnvironment;
+import com.intellij.execution.testframework.sm.runner.SMRunnerConsolePropertiesProvider;
 import com.intellij.notification.*;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
 import com.intellij.openapi.application.ModalityState;
 import com.intellij.openapi.components.*;
 import com.intellij.openapi.editor.Document;
@@ -11,20 +21,24 @@ import com.intellij.openapi.editor.EditorFactory;
 import com.intellij.openapi.editor.event.DocumentEvent;
 import com.intellij.openapi.editor.event.DocumentListener;
 import com.intellij.openapi.editor.event.EditorEventMulticaster;
-import com.intellij.openapi.extensions.Extensions;
 import com.intellij.openapi.fileChooser.FileChooserDescriptor;
 import com.intellij.openapi.fileChooser.FileChooserDialog;
 import com.intellij.openapi.fileChooser.FileChooserFactory;
 import com.intellij.openapi.fileEditor.FileDocumentManagerListener;
 import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleUtilCore;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.SystemInfo;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.VirtualFileManager;
-import com.intellij.openapi.wm.StatusBar;
-import com.intellij.openapi.wm.WindowManager;
+import com.intellij.task.ProjectTaskContext;
+import com.intellij.task.ProjectTaskListener;
+import com.intellij.task.ProjectTaskManager;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.intellij.util.concurrency.EdtExecutorService;
 import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.ui.EmptyIcon;
@@ -34,22 +48,44 @@ import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.SystemIndependent;
 
 import java.awt.*;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+@Service
 @State(name="TimeTracker", storages = {@Storage(value = StoragePathMacros.WORKSPACE_FILE)})
-public final class TimeTrackerComponent implements ProjectComponent, PersistentStateComponent<TimeTrackerPersistentState>, Disposable {
+public final class TimeTrackerComponent implements PersistentStateComponent<TimeTrackerPersistentState>, Disposable {
 
     private static final Logger LOG = Logger.getLogger(TimeTrackerComponent.class.getName());
     private static final boolean DEBUG_LIFECYCLE = false;
     private static final NotificationGroup IDLE_NOTIFICATION_GROUP = new NotificationGroup("Time Tracker - Idle time", NotificationDisplayType.BALLOON, true, null, EmptyIcon.ICON_0);
+    /** Journal appends are done in order, but never on the thread that counted the time. */
+    private static final ExecutorService JOURNAL_EXECUTOR = AppExecutorUtil.createBoundedApplicationPoolExecutor("TimeTracker Journal", 1);
+    /** Compaction is the only heavy I/O, so journals are compacted one at a time, off the journal appends. */
+    private static final ScheduledExecutorService COMPACTION_EXECUTOR = AppExecutorUtil.createBoundedScheduledExecutorService("TimeTracker Journal Compaction", 1);
+    private static final long COMPACTION_FIRST_DELAY_MINUTES = 10;
+    private static final long COMPACTION_PERIOD_MINUTES = TimeUnit.DAYS.toMinutes(1);
 
     @Nullable
     private final Project _project;
@@ -57,8 +93,46 @@ public final class TimeTrackerComponent implements ProjectComponent, PersistentS
     @Nullable
     private TimeTrackerWidget widget;
 
+    @Nullable
+    private final TimeTrackerJournal journal;
+    /** Loaded on first use. Only modified on {@link #JOURNAL_EXECUTOR}, so that it always matches the journal. */
+    @Nullable
+    private volatile TimeTrackerSessionIndex sessionIndex;
+    @Nullable
+    private CompletableFuture<TimeTrackerSessionIndex> sessionIndexFuture;
+    /** Notified on {@link #JOURNAL_EXECUTOR} of every session added to {@link #sessionIndex}. */
+    private final List<TimeTrackerJournal.Visitor> sessionListeners = ContainerUtil.createLockFreeCopyOnWriteList();
+    private boolean disposing = false;
+    @Nullable
+    private ScheduledFuture<?> compaction;
+    private int rawHistoryDays;
+    private int hourlyHistoryDays;
+
+    private final TimeTrackerActivityCounters activityCounters = new TimeTrackerActivityCounters();
+    private final TimeTrackerDimensions dimensions = new TimeTrackerDimensions(System.currentTimeMillis());
+
+    /** Counted time per task (active changelist). Switching tasks only swaps {@link #activeTaskMs}. */
+    private final Map<String, long[]> taskTimeMs = new HashMap<>();
+    @Nullable
+    private String activeTask;
+    @Nullable
+    private long[] activeTaskMs;
+
+    @NotNull
+    private String budgetRules = "";
+    private final TimeTrackerBudgets budgets = new TimeTrackerBudgets(ZoneId.systemDefault());
+
+    @NotNull
+    private String syncEndpoint = "";
+    @Nullable
+    private TimeTrackerSync sync;
+    /** One sync at a time per project, so a replaced sync is done with the outbox before the new one reads it. */
+    private final ExecutorService syncExecutor = AppExecutorUtil.createBoundedApplicationPoolExecutor("TimeTracker Sync", 1);
+
 
     private long totalTimeMs = 0;
+    /** Counted time since the last commit, not including the current running segment. Only moved by counting and commits. */
+    private long timeSinceLastCommitMs = 0;
     private Status status = Status.STOPPED;
     private long statusStartedMs = System.currentTimeMillis();
     private long lastTickMs = System.currentTimeMillis();
@@ -82,6 +156,7 @@ public final class TimeTrackerComponent implements ProjectComponent, PersistentS
     private static final long TICK_JUMP_DETECTION_THRESHOLD_MS = TICK_DELAY_UNIT.toMillis(TICK_DELAY * 20);
 
     private DocumentListener autoStartDocumentListener = null;
+    private boolean saveDocumentListenerRegistered = false;
     private final FileDocumentManagerListener saveDocumentListener = new FileDocumentManagerListener() {
         @Override
         public void beforeAllDocumentsSaving() {
@@ -92,50 +167,69 @@ public final class TimeTrackerComponent implements ProjectComponent, PersistentS
         public void beforeDocumentSaving(@NotNull Document document) {
             saveTime();
         }
-
-        // Default methods in 2018.3, but would probably crash in earlier versions
-        @Override
-        public void beforeFileContentReload(@NotNull VirtualFile file, @NotNull Document document) { }
-
-        @Override
-        public void fileWithNoDocumentChanged(@NotNull VirtualFile file) { }
-
-        @Override
-        public void fileContentReloaded(@NotNull VirtualFile file, @NotNull Document document) { }
-
-        @Override
-        public void fileContentLoaded(@NotNull VirtualFile file, @NotNull Document document) { }
-
-        @Override
-        public void unsavedDocumentsDropped() { }
     };
 
+    /** Saving only matters once something was counted, so the listener is registered on first start. */
+    private void registerSaveDocumentListener() {
+        if (saveDocumentListenerRegistered) {
+            return;
+        }
+        saveDocumentListenerRegistered = true;
+        ApplicationManager.getApplication().getMessageBus().connect(this)
+                .subscribe(AppTopics.FILE_DOCUMENT_SYNC, saveDocumentListener);
+    }
+
     private synchronized void saveTime() {
         if (status == Status.RUNNING) {
             final long now = System.currentTimeMillis();
-            final long msInState = Math.max(0L, now - statusStartedMs);
+            final long startedMs = statusStartedMs;
             statusStartedMs = now;
-            addTotalTimeMs(msInState);
+            countInterval(startedMs, now);
         }
     }
 
     private static final Set<TimeTrackerComponent> ALL_OPENED_TRACKERS = ContainerUtil.newConcurrentSet();
 
+    /** Action run when entering or leaving a status. Gets the instant the left status was entered and the instant of the transition. */
+    private interface StatusAction {
+        void run(long previousStateStartedMs, long now);
+    }
+
+    private static final StatusAction NO_ACTION = (previousStateStartedMs, now) -> {};
+
+    /** TOGGLED[status.ordinal()] is where {@link #toggleRunning()} goes from status. */
+    private static final Status[] TOGGLED = new Status[Status.values().length];
+
+    static {
+        TOGGLED[Status.RUNNING.ordinal()] = Status.STOPPED;
+        TOGGLED[Status.IDLE.ordinal()] = Status.RUNNING;
+        TOGGLED[Status.STOPPED.ordinal()] = Status.RUNNING;
+    }
+
+    /** Transition tables, indexed by status ordinal, filled once per instance so that transitions don't allocate. */
+    private final StatusAction[] onExit = new StatusAction[Status.values().length];
+    private final StatusAction[] onEnter = new StatusAction[Status.values().length];
+
+    {
+        Arrays.fill(onExit, NO_ACTION);
+        Arrays.fill(onEnter, NO_ACTION);
+        onExit[Status.RUNNING.ordinal()] = this::countInterval;
+        onExit[Status.IDLE.ordinal()] = this::exitIdle;
+        onEnter[Status.RUNNING.ordinal()] = this::enterRunning;
+    }
+
+    @NotNull
+    public static TimeTrackerComponent getInstance(@NotNull Project project) {
+        return project.getService(TimeTrackerComponent.class);
+    }
+
     @NotNull
     public Status getStatus() {
         return status;
     }
 
     public synchronized void toggleRunning() {
-        switch (this.status) {
-            case RUNNING:
-                setStatus(Status.STOPPED);
-                break;
-            case STOPPED:
-            case IDLE:
-                setStatus(Status.RUNNING);
-                break;
-        }
+        setStatus(TOGGLED[status.ordinal()]);
     }
 
     private synchronized void tick() {
@@ -146,8 +240,19 @@ public final class TimeTrackerComponent implements ProjectComponent, PersistentS
 
         final long now = System.currentTimeMillis();
         final long sinceLastTickMs = now - lastTickMs;
+        if (activityCounters.isAnyActive()) {
+            // Waiting for a build, tests or a debugger is not idling
+            lastActivityMs = now;
+        }
         final long sinceLastActivityMs = now - lastActivityMs;
 
+        if (now >= budgets.getNextDeadlineMs()) {
+            // Count what is running so far, so that budgets see it
+            saveTime();
+            budgets.fireCrossed(this::notifyBudgetCrossed);
+            budgets.reschedule(now, statusStartedMs);
+        }
+
         if (sinceLastTickMs > TICK_JUMP_DETECTION_THRESHOLD_MS) {
             final long lastValidTimeMs = lastTickMs + TICK_JUMP_DETECTION_THRESHOLD_MS;
             setStatus(stopWhenIdleRatherThanPausing ? Status.STOPPED : Status.IDLE, lastValidTimeMs);
@@ -164,6 +269,44 @@ public final class TimeTrackerComponent implements ProjectComponent, PersistentS
         totalTimeMs = Math.max(0L, totalTimeMs + milliseconds);
     }
 
+    /** Count the time between given instants and record it in the journal. */
+    private synchronized void countInterval(long startMs, long endMs) {
+        if (endMs <= startMs) {
+            return;
+        }
+        addTotalTimeMs(endMs - startMs);
+        timeSinceLastCommitMs += endMs - startMs;
+        if (activeTaskMs != null) {
+            activeTaskMs[0] += endMs - startMs;
+        }
+        budgets.count(startMs, endMs);
+        budgets.reschedule(endMs, status == Status.RUNNING ? statusStartedMs : -1);
+
+        final TimeTrackerJournal journal = this.journal;
+        if (journal != null) {
+            final List<String> tags = currentSessionTags();
+            JOURNAL_EXECUTOR.execute(() -> {
+                try {
+                    journal.append(startMs, endMs, tags);
+                } catch (IOException e) {
+                    LOG.log(Level.WARNING, "Failed to append to "+journal.getFile(), e);
+                }
+                final TimeTrackerSessionIndex index = sessionIndex;
+                if (index != null) {
+                    index.add(startMs, endMs, tags);
+                    for (TimeTrackerJournal.Visitor listener : sessionListeners) {
+                        listener.interval(startMs, endMs);
+                    }
+                }
+            });
+        }
+
+        final TimeTrackerSync sync = this.sync;
+        if (sync != null) {
+            sync.offer(startMs, endMs);
+        }
+    }
+
     public synchronized void setStatus(@NotNull Status status) {
         setStatus(status, System.currentTimeMillis());
     }
@@ -178,69 +321,68 @@ public final class TimeTrackerComponent implements ProjectComponent, PersistentS
             ticker = null;
         }
 
-        final long msInState = Math.max(0L, now - statusStartedMs);
-
-        switch (this.status) {
-            case RUNNING: {
-                addTotalTimeMs(msInState);
-                break;
-            }
-            case IDLE: {
-                if (msToS(msInState) <= autoCountIdleSeconds) {
-                    addTotalTimeMs(msInState);
-                } else if (msInState > 1000) {
-                    final Project project = project();
-                    if (project != null) {
-                        final Notification notification = IDLE_NOTIFICATION_GROUP.createNotification(
-                                "Gone for <b>" + millisecondsToString(msInState) + "</b>",
-                                NotificationType.INFORMATION);
-
-                        notification.addAction(new AnAction("Count this time in") {
-
-                            private boolean primed = true;
-
-                            @Override
-                            public void actionPerformed(@NotNull AnActionEvent e) {
-                                if (primed) {
-                                    addTotalTimeMs(msInState);
-                                    repaintWidget(false);
-                                    primed = false;
-                                    getTemplatePresentation().setText("Already counted in");
-                                    e.getPresentation().setText("Counted in");
-                                    notification.expire();
-                                }
-                            }
-                        });
-
-                        Notifications.Bus.notify(notification, project);
-                    }
-                }
-                break;
-            }
-        }
+        final long stateStartedMs = statusStartedMs;
+        onExit[this.status.ordinal()].run(stateStartedMs, now);
 
         this.statusStartedMs = now;
         this.lastTickMs = now;
         this.lastActivityMs = now;
         this.status = status;
 
-        switch (status) {
-            case RUNNING: {
+        onEnter[status.ordinal()].run(stateStartedMs, now);
+
+        budgets.reschedule(now, status == Status.RUNNING ? now : -1);
+
+        repaintWidget(false);
+    }
 
-                if (pauseOtherTrackerInstances) {
-                    ALL_OPENED_TRACKERS.forEach(tracker -> {
-                        if (tracker != this) {
-                            tracker.otherComponentStarted();
+    /** Leaving IDLE: count short pauses in, offer to count in longer ones. */
+    private void exitIdle(final long stateStartedMs, final long now) {
+        final long msInState = Math.max(0L, now - stateStartedMs);
+        if (msToS(msInState) <= autoCountIdleSeconds) {
+            countInterval(stateStartedMs, now);
+        } else if (msInState > 1000) {
+            final Project project = project();
+            if (project != null) {
+                final Notification notification = IDLE_NOTIFICATION_GROUP.createNotification(
+                        "Gone for <b>" + millisecondsToString(msInState) + "</b>",
+                        NotificationType.INFORMATION);
+
+                notification.addAction(new AnAction("Count this time in") {
+
+                    private boolean primed = true;
+
+                    @Override
+                    public void actionPerformed(@NotNull AnActionEvent e) {
+                        if (primed) {
+                            countInterval(stateStartedMs, now);
+                            repaintWidget(false);
+                            primed = false;
+                            getTemplatePresentation().setText("Already counted in");
+                            e.getPresentation().setText("Counted in");
+                            notification.expire();
                         }
-                    });
-                }
+                    }
+                });
 
-                ticker = EdtExecutorService.getScheduledExecutorInstance().scheduleWithFixedDelay(this::tick, TICK_DELAY, TICK_DELAY, TICK_DELAY_UNIT);
+                Notifications.Bus.notify(notification, project);
             }
-            break;
         }
+    }
 
-        repaintWidget(false);
+    private void enterRunning(final long previousStateStartedMs, final long now) {
+        registerSaveDocumentListener();
+        registerActivityListeners();
+
+        if (pauseOtherTrackerInstances) {
+            ALL_OPENED_TRACKERS.forEach(tracker -> {
+                if (tracker != this) {
+                    tracker.otherComponentStarted();
+                }
+            });
+        }
+
+        ticker = EdtExecutorService.getScheduledExecutorInstance().scheduleWithFixedDelay(this::tick, TICK_DELAY, TICK_DELAY, TICK_DELAY_UNIT);
     }
 
     public synchronized int getTotalTimeSeconds() {
@@ -253,6 +395,217 @@ public final class TimeTrackerComponent implements ProjectComponent, PersistentS
         return (int) msToS(resultMs);
     }
 
+    /** Time during which builds, tests or debug sessions of given category were running. */
+    public long getActivityTimeMs(@NotNull TimeTrackerActivityCounters.Category category) {
+        return activityCounters.getTotalMs(category, System.currentTimeMillis());
+    }
+
+    private void compactJournal() {
+        final TimeTrackerJournal journal = this.journal;
+        if (journal == null) {
+            return;
+        }
+        final TimeTrackerJournalCompactor compactor;
+        synchronized (this) {
+            compactor = new TimeTrackerJournalCompactor(ZoneId.systemDefault(), System.currentTimeMillis(), rawHistoryDays, hourlyHistoryDays);
+        }
+        try {
+            final boolean compacted = compactor.compact(journal);
+            if (DEBUG_LIFECYCLE && compacted) LOG.log(Level.INFO, "Compacted "+journal.getFile());
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Failed to compact "+journal.getFile(), e);
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Tags of the time being counted now: the file being edited, its module, whatever {@link TimeTrackerTaskSource}s
+     * know about it (like its branch) and the selected run configuration.
+     */
+    @NotNull
+    private List<String> currentSessionTags() {
+        final Project project = project();
+        if (project == null || disposing || !ApplicationManager.getApplication().isDispatchThread()) {
+            return Collections.emptyList();
+        }
+        final List<String> tags = new ArrayList<>(3);
+        final VirtualFile[] selectedFiles = FileEditorManager.getInstance(project).getSelectedFiles();
+        if (selectedFiles.length > 0) {
+            tags.add("file:" + selectedFiles[0].getPath());
+            final Module module = ModuleUtilCore.findModuleForFile(selectedFiles[0], project);
+            if (module != null) {
+                tags.add("module:" + module.getName());
+            }
+            for (TimeTrackerTaskSource source : TimeTrackerTaskSource.EP_NAME.getExtensionList()) {
+                source.addSessionTags(project, selectedFiles[0], tags);
+            }
+        }
+        final RunnerAndConfigurationSettings configuration = RunManager.getInstance(project).getSelectedConfiguration();
+        if (configuration != null) {
+            tags.add("run:" + configuration.getName());
+        }
+        return tags;
+    }
+
+    /**
+     * Index of all counted sessions by their tags, see {@link TimeTrackerSessionIndex}.
+     * Loaded from the journal on first request and then kept up to date as time is counted.
+     */
+    @NotNull
+    public synchronized CompletableFuture<TimeTrackerSessionIndex> getSessionIndex() {
+        if (sessionIndexFuture == null) {
+            final TimeTrackerJournal journal = this.journal;
+            sessionIndexFuture = CompletableFuture.supplyAsync(() -> {
+                TimeTrackerSessionIndex index;
+                try {
+                    index = TimeTrackerSessionIndex.load(journal, ZoneId.systemDefault());
+                } catch (IOException e) {
+                    LOG.log(Level.WARNING, "Failed to index "+(journal == null ? null : journal.getFile()), e);
+                    index = new TimeTrackerSessionIndex(ZoneId.systemDefault());
+                }
+                sessionIndex = index;
+                return index;
+            }, JOURNAL_EXECUTOR);
+        }
+        return sessionIndexFuture;
+    }
+
+    /**
+     * Get notified of counted sessions, after being initialized with the current session index.
+     * Both happen on a background thread, in order, so no session is missed or seen twice.
+     */
+    public void addSessionListener(@NotNull Disposable parent, @NotNull Consumer<TimeTrackerSessionIndex> initializer, @NotNull TimeTrackerJournal.Visitor listener) {
+        Disposer.register(parent, () -> sessionListeners.remove(listener));
+        getSessionIndex().thenRunAsync(() -> {
+            final TimeTrackerSessionIndex index = sessionIndex;
+            if (index != null && !Disposer.isDisposed(parent)) {
+                initializer.accept(index);
+                sessionListeners.add(listener);
+            }
+        }, JOURNAL_EXECUTOR);
+    }
+
+    /** Time counted since the last commit, including the current running segment. O(1). */
+    public synchronized long getTimeSinceLastCommitMs() {
+        long resultMs = timeSinceLastCommitMs;
+        if (status == Status.RUNNING) {
+            resultMs += Math.max(0L, System.currentTimeMillis() - statusStartedMs);
+        }
+        return resultMs;
+    }
+
+    /**
+     * Commit went through with given tracked time, start counting towards the next one
+     * and note it in the commit index, {@code commitTimeMs<TAB>trackedMs<TAB>subject} per line.
+     */
+    public void commitCheckpoint(long trackedMs, @NotNull String commitMessage) {
+        final long now = System.currentTimeMillis();
+        synchronized (this) {
+            // The running segment was included in trackedMs, so close it first to keep the subtraction exact
+            saveTime();
+            timeSinceLastCommitMs = Math.max(0L, timeSinceLastCommitMs - trackedMs);
+        }
+
+        final Project project = project();
+        if (project == null) {
+            return;
+        }
+        final Path index = Paths.get(PathManager.getSystemPath(), "time-tracker", project.getLocationHash() + ".commits");
+        final int subjectEnd = commitMessage.indexOf('\n');
+        final String subject = (subjectEnd < 0 ? commitMessage : commitMessage.substring(0, subjectEnd)).replace('\t', ' ').trim();
+        final String line = now + "\t" + trackedMs + "\t" + subject + "\n";
+        JOURNAL_EXECUTOR.execute(() -> {
+            try {
+                Files.createDirectories(index.getParent());
+                Files.write(index, line.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Failed to append to "+index, e);
+            }
+        });
+    }
+
+    private void notifyBudgetCrossed(@NotNull TimeTrackerBudgets.Rule rule) {
+        final Project project = project();
+        if (project == null) {
+            return;
+        }
+        final String period = rule.period == TimeTrackerBudgets.Period.DAY ? "daily" : "weekly";
+        final String threshold = millisecondsToString(rule.thresholdMs);
+        final Notification notification = rule.goal
+                ? IDLE_NOTIFICATION_GROUP.createNotification("Reached " + period + " goal of <b>" + threshold + "</b>", NotificationType.INFORMATION)
+                : IDLE_NOTIFICATION_GROUP.createNotification("Over " + period + " budget of <b>" + threshold + "</b>", NotificationType.WARNING);
+        Notifications.Bus.notify(notification, project);
+    }
+
+    @NotNull
+    public String getBudgetRules() {
+        return budgetRules;
+    }
+
+    /** Set budgets and goals, see {@link TimeTrackerBudgets#setRules(String)}. */
+    public synchronized void setBudgetRules(@Nullable String budgetRules) {
+        this.budgetRules = budgetRules == null ? "" : budgetRules.trim();
+        budgets.setRules(this.budgetRules);
+        final long now = System.currentTimeMillis();
+        budgets.reschedule(now, status == Status.RUNNING ? statusStartedMs : -1);
+    }
+
+    /** Attribute time counted from now on to given task. The running segment so far goes to the previous one. */
+    public synchronized void setActiveTask(@NotNull String task) {
+        if (task.equals(activeTask)) {
+            return;
+        }
+        saveTime();
+        switchActiveTask(task);
+    }
+
+    private void switchActiveTask(@NotNull String task) {
+        activeTask = task;
+        activeTaskMs = taskTimeMs.computeIfAbsent(task, t -> new long[1]);
+    }
+
+    /** Move time counted for a task to its new name. */
+    synchronized void renameTask(@NotNull String oldName, @NotNull String newName) {
+        final long[] timeMs = taskTimeMs.remove(oldName);
+        if (timeMs != null) {
+            taskTimeMs.merge(newName, timeMs, (existing, renamed) -> {
+                existing[0] += renamed[0];
+                return existing;
+            });
+        }
+        if (oldName.equals(activeTask)) {
+            switchActiveTask(newName);
+        }
+    }
+
+    @Nullable
+    public synchronized String getActiveTask() {
+        return activeTask;
+    }
+
+    /** Counted time per task, including the running segment of the active one. */
+    @NotNull
+    public synchronized Map<String, Long> getTaskTimesMs() {
+        final Map<String, Long> result = new LinkedHashMap<>();
+        taskTimeMs.forEach((task, timeMs) -> result.put(task, timeMs[0]));
+        if (activeTask != null && status == Status.RUNNING) {
+            result.merge(activeTask, Math.max(0L, System.currentTimeMillis() - statusStartedMs), Long::sum);
+        }
+        return result;
+    }
+
+    /** Reset time of one task, other tasks and the total time are kept. */
+    public synchronized void resetTaskTime(@NotNull String task) {
+        if (task.equals(activeTask)) {
+            saveTime();
+        }
+        final long[] timeMs = taskTimeMs.get(task);
+        if (timeMs != null) {
+            timeMs[0] = 0L;
+        }
+    }
+
     public long getIdleThresholdMs() {
         return idleThresholdMs;
     }
@@ -271,9 +624,77 @@ public final class TimeTrackerComponent implements ProjectComponent, PersistentS
 
     public TimeTrackerComponent(@Nullable Project project) {
         this._project = project;
+        this.journal = project == null ? null : new TimeTrackerJournal(
+                Paths.get(PathManager.getSystemPath(), "time-tracker", project.getLocationHash() + TimeTrackerJournal.EXTENSION));
+        ALL_OPENED_TRACKERS.add(this);
+        if (journal != null) {
+            compaction = COMPACTION_EXECUTOR.scheduleWithFixedDelay(this::compactJournal,
+                    COMPACTION_FIRST_DELAY_MINUTES, COMPACTION_PERIOD_MINUTES, TimeUnit.MINUTES);
+        }
         if (DEBUG_LIFECYCLE) LOG.log(Level.INFO, "Instantiated "+this);
     }
 
+    private boolean activityListenersRegistered = false;
+
+    /**
+     * Tasks, builds and runs only matter while time is counted, so like {@link #registerSaveDocumentListener()}
+     * their listeners are registered on first start. The active task is looked up once, here.
+     * Listeners of builds and runs only touch {@link #activityCounters}, never this object's monitor.
+     */
+    private void registerActivityListeners() {
+        final Project project = project();
+        if (activityListenersRegistered || disposing || project == null) {
+            return;
+        }
+        activityListenersRegistered = true;
+        for (TimeTrackerTaskSource source : TimeTrackerTaskSource.EP_NAME.getExtensionList()) {
+            final String task = source.follow(project, this, this);
+            if (task != null && activeTask == null) {
+                switchActiveTask(task);
+            }
+        }
+        project.getMessageBus().connect(this).subscribe(ExecutionManager.EXECUTION_TOPIC, new ExecutionListener() {
+            @Override
+            public void processStarted(@NotNull String executorId, @NotNull ExecutionEnvironment env, @NotNull ProcessHandler handler) {
+                final TimeTrackerActivityCounters.Category category = executionCategory(executorId, env);
+                if (category != null) {
+                    activityCounters.started(category, System.currentTimeMillis());
+                }
+            }
+
+            @Override
+            public void processTerminated(@NotNull String executorId, @NotNull ExecutionEnvironment env, @NotNull ProcessHandler handler, int exitCode) {
+                final TimeTrackerActivityCounters.Category category = executionCategory(executorId, env);
+                if (category != null) {
+                    activityCounters.finished(category, System.currentTimeMillis());
+                }
+            }
+        });
+        project.getMessageBus().connect(this).subscribe(ProjectTaskListener.TOPIC, new ProjectTaskListener() {
+            @Override
+            public void started(@NotNull ProjectTaskContext context) {
+                activityCounters.started(TimeTrackerActivityCounters.Category.BUILD, System.currentTimeMillis());
+            }
+
+            @Override
+            public void finished(@NotNull ProjectTaskManager.Result result) {
+                activityCounters.finished(TimeTrackerActivityCounters.Category.BUILD, System.currentTimeMillis());
+            }
+        });
+    }
+
+    /** Debugging anything counts as debugging, tests are recognized by their test runner console. Plain runs are not counted. */
+    @Nullable
+    private static TimeTrackerActivityCounters.Category executionCategory(@NotNull String executorId, @NotNull ExecutionEnvironment env) {
+        if (DefaultDebugExecutor.EXECUTOR_ID.equals(executorId)) {
+            return TimeTrackerActivityCounters.Category.DEBUG;
+        }
+        if (env.getRunProfile() instanceof SMRunnerConsolePropertiesProvider) {
+            return TimeTrackerActivityCounters.Category.TEST;
+        }
+        return null;
+    }
+
     @Nullable
     private Project project() {
         final Project project = _project;
@@ -310,87 +731,45 @@ public final class TimeTrackerComponent implements ProjectComponent, PersistentS
     @Override
     public void loadState(@NotNull TimeTrackerPersistentState state) {
         if (DEBUG_LIFECYCLE) LOG.log(Level.INFO, "loadState() "+this);
-        ApplicationManager.getApplication().invokeLater(() -> {
-            synchronized (this) {
-                this.totalTimeMs = state.totalTimeSeconds * 1000L;
-                setIdleThresholdMs(state.idleThresholdMs);
-                setAutoCountIdleSeconds(state.autoCountIdleSeconds);
-                setPauseOtherTrackerInstances(state.pauseOtherTrackerInstances);
-                setAutoStart(state.autoStart);
+        synchronized (this) {
+            final long now = System.currentTimeMillis();
+            this.totalTimeMs = state.totalTimeSeconds * 1000L;
+            this.timeSinceLastCommitMs = state.timeSinceLastCommitSeconds * 1000L;
+            if (state.taskTimeSeconds != null) {
+                state.taskTimeSeconds.forEach((task, seconds) ->
+                        taskTimeMs.computeIfAbsent(task, t -> new long[1])[0] = seconds == null ? 0L : seconds * 1000L);
             }
-            repaintWidget(true);
-        });
-    }
-
-    @Override
-    public synchronized void initComponent() {
-        if (DEBUG_LIFECYCLE) LOG.log(Level.INFO, "initComponent() "+this);
-        ALL_OPENED_TRACKERS.add(this);
-        Extensions.getArea(null).getExtensionPoint(FileDocumentManagerListener.EP_NAME)
-                .registerExtension(saveDocumentListener);
-    }
-
-    @Override
-    public synchronized void disposeComponent() {
-        if (DEBUG_LIFECYCLE) LOG.log(Level.INFO, "disposeComponent() "+this);
-        ALL_OPENED_TRACKERS.remove(this);
-        Extensions.getArea(null).getExtensionPoint(FileDocumentManagerListener.EP_NAME)
-                .unregisterExtension(saveDocumentListener);
-
-        updateAutoStartListener(false);
-
-        setStatus(Status.STOPPED);
-    }
-
-    @Override
-    @NotNull
-    public String getComponentName() {
-        return "TimeTrackerComponent";
-    }
-
-    @Nullable
-    private StatusBar widgetStatusBar() {
-        final WindowManager windowManager = WindowManager.getInstance();
-        if (windowManager == null) {
-            return null;
-        }
-        final Project project = project();
-        if (project == null) {
-            return null;
+            setIdleThresholdMs(state.idleThresholdMs);
+            setAutoCountIdleSeconds(state.autoCountIdleSeconds);
+            setPauseOtherTrackerInstances(state.pauseOtherTrackerInstances);
+            setAutoStart(state.autoStart);
+            setSyncEndpoint(state.syncEndpoint);
+            this.rawHistoryDays = state.rawHistoryDays;
+            this.hourlyHistoryDays = state.hourlyHistoryDays;
+            budgets.restore(now, state.budgetDayStartMs, state.budgetDaySeconds * 1000L,
+                    state.budgetWeekStartMs, state.budgetWeekSeconds * 1000L);
+            setBudgetRules(state.budgetRules);
+            activityCounters.setTotalMs(TimeTrackerActivityCounters.Category.BUILD, state.buildTimeSeconds * 1000L, now);
+            activityCounters.setTotalMs(TimeTrackerActivityCounters.Category.TEST, state.testTimeSeconds * 1000L, now);
+            activityCounters.setTotalMs(TimeTrackerActivityCounters.Category.DEBUG, state.debugTimeSeconds * 1000L, now);
+            dimensions.setTotalMs(TimeTrackerDimensions.Dimension.EDITING, state.editingTimeSeconds * 1000L, now);
+            dimensions.setTotalMs(TimeTrackerDimensions.Dimension.READING, state.readingTimeSeconds * 1000L, now);
+            dimensions.setTotalMs(TimeTrackerDimensions.Dimension.AWAY, state.awayTimeSeconds * 1000L, now);
+            dimensions.setTotalMs(TimeTrackerDimensions.Dimension.IDE_INACTIVE, state.ideInactiveTimeSeconds * 1000L, now);
         }
-        return windowManager.getStatusBar(project);
+        repaintWidget(true);
     }
 
-    @Override
-    public void projectOpened() {
-        if (DEBUG_LIFECYCLE) LOG.log(Level.INFO, "projectOpened() "+this);
-        UIUtil.invokeLaterIfNeeded(() -> {
-            TimeTrackerWidget widget;
-            synchronized (this) {
-                widget = this.widget;
-                if (widget == null) {
-                    this.widget = widget = new TimeTrackerWidget(this);
-                }
-            }
-
-            final StatusBar statusBar = widgetStatusBar();
-            if (statusBar != null) {
-                statusBar.addWidget(widget, "before Memory", this);
-            } else {
-                LOG.log(Level.SEVERE, "Can't initialize time tracking widget, status bar is null");
-            }
-        });
+    /** Called by {@link TimeTrackerWidget} when the status bar installs it. */
+    synchronized void attachWidget(@NotNull TimeTrackerWidget widget) {
+        this.widget = widget;
     }
 
-    @Override
-    public void projectClosed() {
-        if (DEBUG_LIFECYCLE) LOG.log(Level.INFO, "projectClosed() "+this);
-        UIUtil.invokeLaterIfNeeded(() -> {
-            final StatusBar statusBar = widgetStatusBar();
-            if (statusBar != null) {
-                statusBar.removeWidget(TimeTrackerWidget.ID);
-            }
-        });
+    /** Called by {@link TimeTrackerWidget} when the status bar disposes it. */
+    synchronized void detachWidget(@NotNull TimeTrackerWidget widget) {
+        if (this.widget == widget) {
+            this.widget = null;
+        }
     }
 
     @NotNull
@@ -399,20 +778,59 @@ public final class TimeTrackerComponent implements ProjectComponent, PersistentS
         if (DEBUG_LIFECYCLE) LOG.log(Level.INFO, "getState() "+this);
         final TimeTrackerPersistentState result = new TimeTrackerPersistentState();
         result.totalTimeSeconds = msToS(totalTimeMs);
+        result.timeSinceLastCommitSeconds = msToS(timeSinceLastCommitMs);
+        taskTimeMs.forEach((task, timeMs) -> result.taskTimeSeconds.put(task, msToS(timeMs[0])));
 
         result.idleThresholdMs = idleThresholdMs;
         result.naggedAbout = naggedAbout;
         result.autoCountIdleSeconds = autoCountIdleSeconds;
         result.pauseOtherTrackerInstances = pauseOtherTrackerInstances;
         result.autoStart = autoStart;
+        result.syncEndpoint = syncEndpoint;
+        result.budgetRules = budgetRules;
+        result.rawHistoryDays = rawHistoryDays;
+        result.hourlyHistoryDays = hourlyHistoryDays;
+        result.budgetDayStartMs = budgets.getDayStartMs();
+        result.budgetDaySeconds = msToS(budgets.getDayCountedMs());
+        result.budgetWeekStartMs = budgets.getWeekStartMs();
+        result.budgetWeekSeconds = msToS(budgets.getWeekCountedMs());
+
+        final long now = System.currentTimeMillis();
+        result.buildTimeSeconds = msToS(activityCounters.getTotalMs(TimeTrackerActivityCounters.Category.BUILD, now));
+        result.testTimeSeconds = msToS(activityCounters.getTotalMs(TimeTrackerActivityCounters.Category.TEST, now));
+        result.debugTimeSeconds = msToS(activityCounters.getTotalMs(TimeTrackerActivityCounters.Category.DEBUG, now));
+        result.editingTimeSeconds = msToS(dimensions.getTotalMs(TimeTrackerDimensions.Dimension.EDITING, now));
+        result.readingTimeSeconds = msToS(dimensions.getTotalMs(TimeTrackerDimensions.Dimension.READING, now));
+        result.awayTimeSeconds = msToS(dimensions.getTotalMs(TimeTrackerDimensions.Dimension.AWAY, now));
+        result.ideInactiveTimeSeconds = msToS(dimensions.getTotalMs(TimeTrackerDimensions.Dimension.IDE_INACTIVE, now));
 
         return result;
     }
 
+    /** Called by {@link TimeTrackerWidget} when the project's IDE frame gains or loses focus. */
+    public synchronized void notifyFrameFocusChanged(boolean focused) {
+        dimensions.fire(focused ? TimeTrackerDimensions.Event.FOCUS_GAINED : TimeTrackerDimensions.Event.FOCUS_LOST, System.currentTimeMillis());
+    }
+
+    /** Time spent in given activity dimension, independently of the main status. */
+    public synchronized long getDimensionTimeMs(@NotNull TimeTrackerDimensions.Dimension dimension) {
+        return dimensions.getTotalMs(dimension, System.currentTimeMillis());
+    }
+
+    public synchronized boolean isAway() {
+        return dimensions.isActive(TimeTrackerDimensions.Dimension.AWAY);
+    }
+
+    /** Manually mark user as away, e.g. in a meeting, until unmarked. */
+    public synchronized void setAway(boolean away) {
+        dimensions.fire(away ? TimeTrackerDimensions.Event.AWAY_STARTED : TimeTrackerDimensions.Event.AWAY_ENDED, System.currentTimeMillis());
+    }
+
     /** User did something, this resets the idle timer and restarts counting, if applicable. */
     public synchronized void notifyUserNotIdle() {
         final long now = System.currentTimeMillis();
         this.lastActivityMs = now;
+        dimensions.fire(TimeTrackerDimensions.Event.INPUT, now);
         if (status == Status.IDLE) {
             setStatus(Status.RUNNING, now);
         }
@@ -424,8 +842,24 @@ public final class TimeTrackerComponent implements ProjectComponent, PersistentS
     }
 
     @Override
-    public void dispose() {
-        // Everything is implemented in disposeComponent()
+    public synchronized void dispose() {
+        if (DEBUG_LIFECYCLE) LOG.log(Level.INFO, "dispose() "+this);
+        ALL_OPENED_TRACKERS.remove(this);
+        disposing = true;
+        sessionListeners.clear();
+
+        updateAutoStartListener(false);
+
+        setStatus(Status.STOPPED);
+
+        if (sync != null) {
+            sync.close();
+            sync = null;
+        }
+        if (compaction != null) {
+            compaction.cancel(true);
+            compaction = null;
+        }
     }
 
     public enum Status {
@@ -510,6 +944,8 @@ public final class TimeTrackerComponent implements ProjectComponent, PersistentS
         if (milliseconds == RESET_TIME_TO_ZERO) {
             totalTimeMs = 0L;
             statusStartedMs = System.currentTimeMillis();
+            activityCounters.reset(statusStartedMs);
+            dimensions.reset(statusStartedMs);
         } else {
             addTotalTimeMs(milliseconds);
         }
@@ -525,6 +961,32 @@ public final class TimeTrackerComponent implements ProjectComponent, PersistentS
         updateAutoStartListener(autoStart);
     }
 
+    @NotNull
+    public String getSyncEndpoint() {
+        return syncEndpoint;
+    }
+
+    /** Set URL to which counted sessions are uploaded, empty to disable uploading. */
+    public synchronized void setSyncEndpoint(@Nullable String syncEndpoint) {
+        final String endpoint = syncEndpoint == null ? "" : syncEndpoint.trim();
+        if (endpoint.equals(this.syncEndpoint)) {
+            return;
+        }
+        this.syncEndpoint = endpoint;
+
+        if (sync != null) {
+            sync.close();
+            sync = null;
+        }
+        final URL url = TimeTrackerSync.parseEndpoint(endpoint);
+        final Project project = project();
+        if (url != null && project != null) {
+            sync = new TimeTrackerSync(project.getLocationHash(), url,
+                    Paths.get(PathManager.getSystemPath(), "time-tracker", project.getLocationHash() + TimeTrackerSync.OUTBOX_EXTENSION),
+                    syncExecutor);
+        }
+    }
+
     private void updateAutoStartListener(boolean enabled) {
         final EditorEventMulticaster editorEventMulticaster = EditorFactory.getInstance().getEventMulticaster();
         if (autoStartDocumentListener != null) {
@@ -1,4 +1,3 @@
-import com.intellij.openapi.application.Application;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.*;
 import org.jetbrains.annotations.NotNull;
@@ -7,8 +6,9 @@ import org.jetbrains.annotations.NotNull;
  * Only used to track default settings.
  */
 
+@Service
 @State(name="TimeTrackerDefaults", storages = {@Storage("time-tracker-defaults.xml")})
-public class TimeTrackerDefaultSettingsComponent implements BaseComponent, PersistentStateComponent<TimeTrackerPersistentState> {
+public final class TimeTrackerDefaultSettingsComponent implements PersistentStateComponent<TimeTrackerPersistentState> {
 
     private final TimeTrackerPersistentState defaultState = new TimeTrackerPersistentState();
 
@@ -27,20 +27,8 @@ public class TimeTrackerDefaultSettingsComponent implements BaseComponent, Persi
         this.defaultState.setDefaultsFrom(state);
     }
 
-    @NotNull
-    @Override
-    public String getComponentName() {
-        return "TimeTrackerDefaults";
-    }
-
     @NotNull
     public static TimeTrackerDefaultSettingsComponent instance() {
-        final Application application = ApplicationManager.getApplication();
-        final TimeTrackerDefaultSettingsComponent component = application
-                .getComponent(TimeTrackerDefaultSettingsComponent.class);
-        if (component == null) {
-            return new TimeTrackerDefaultSettingsComponent();
-        }
-        return component;
+        return ApplicationManager.getApplication().getService(TimeTrackerDefaultSettingsComponent.class);
     }
 }
\ No newline at end of file
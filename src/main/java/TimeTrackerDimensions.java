@@ -0,0 +1,141 @@
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Activity dimensions tracked alongside the main {@link TimeTrackerComponent.Status}, each with its own accumulator.
+ *
+ * The state is a bit mask of active dimensions, transitions are looked up in a table precomputed for every
+ * event and state, so dispatching an event is an array lookup and a few additions, without allocation.
+ * Switching from editing to reading happens {@link #QUIET_AFTER_MS} after the last input, applied lazily
+ * when the next event arrives or when totals are read.
+ *
+ * Not thread safe, {@link TimeTrackerComponent} calls it under its monitor.
+ */
+final class TimeTrackerDimensions {
+
+    enum Dimension {
+        /** Typing, clicking, scrolling in the IDE. */
+        EDITING,
+        /** IDE is focused, but there is no input. */
+        READING,
+        /** Manually marked as away, e.g. in a meeting. */
+        AWAY,
+        /** IDE window is not focused. */
+        IDE_INACTIVE
+    }
+
+    enum Event {
+        INPUT,
+        QUIET,
+        FOCUS_GAINED,
+        FOCUS_LOST,
+        AWAY_STARTED,
+        AWAY_ENDED
+    }
+
+    static final long QUIET_AFTER_MS = 10_000L;
+
+    private static final Dimension[] DIMENSIONS = Dimension.values();
+    private static final int EDITING = 1 << Dimension.EDITING.ordinal();
+    private static final int READING = 1 << Dimension.READING.ordinal();
+    private static final int AWAY = 1 << Dimension.AWAY.ordinal();
+    private static final int IDE_INACTIVE = 1 << Dimension.IDE_INACTIVE.ordinal();
+    private static final int STATES = 1 << DIMENSIONS.length;
+
+    /** TRANSITIONS[event][state] is the next state. */
+    private static final int[][] TRANSITIONS = new int[Event.values().length][STATES];
+
+    static {
+        for (Event event : Event.values()) {
+            for (int state = 0; state < STATES; state++) {
+                TRANSITIONS[event.ordinal()][state] = transition(event, state);
+            }
+        }
+    }
+
+    /** Defines the transition table, only used to fill it. */
+    private static int transition(@NotNull Event event, int state) {
+        final boolean away = (state & AWAY) != 0;
+        switch (event) {
+            case INPUT:
+                return away ? state : (state & ~(READING | IDE_INACTIVE)) | EDITING;
+            case QUIET:
+                return away || (state & IDE_INACTIVE) != 0 ? state : (state & ~EDITING) | READING;
+            case FOCUS_GAINED:
+                return away ? state & ~IDE_INACTIVE : (state & ~(IDE_INACTIVE | EDITING)) | READING;
+            case FOCUS_LOST:
+                return (state & ~(EDITING | READING)) | IDE_INACTIVE;
+            case AWAY_STARTED:
+                return (state & ~(EDITING | READING)) | AWAY;
+            case AWAY_ENDED:
+                return (state & IDE_INACTIVE) != 0 ? state & ~AWAY : (state & ~AWAY) | READING;
+        }
+        return state;
+    }
+
+    private int state = READING;
+    private final long[] accumulatedMs = new long[DIMENSIONS.length];
+    private final long[] activeSinceMs = new long[DIMENSIONS.length];
+    private long lastInputMs;
+
+    TimeTrackerDimensions(long now) {
+        activeSinceMs[Dimension.READING.ordinal()] = now;
+        lastInputMs = now;
+    }
+
+    void fire(@NotNull Event event, long now) {
+        applyQuiet(now);
+        if (event == Event.INPUT) {
+            lastInputMs = now;
+        }
+        transition(TRANSITIONS[event.ordinal()][state], now);
+    }
+
+    private void applyQuiet(long now) {
+        if ((state & EDITING) != 0 && now - lastInputMs > QUIET_AFTER_MS) {
+            transition(TRANSITIONS[Event.QUIET.ordinal()][state], lastInputMs + QUIET_AFTER_MS);
+        }
+    }
+
+    private void transition(int next, long now) {
+        int changed = state ^ next;
+        while (changed != 0) {
+            final int bit = Integer.numberOfTrailingZeros(changed);
+            if ((state & (1 << bit)) != 0) {
+                accumulatedMs[bit] += Math.max(0L, now - activeSinceMs[bit]);
+            } else {
+                activeSinceMs[bit] = now;
+            }
+            changed &= changed - 1;
+        }
+        state = next;
+    }
+
+    boolean isActive(@NotNull Dimension dimension) {
+        return (state & (1 << dimension.ordinal())) != 0;
+    }
+
+    long getTotalMs(@NotNull Dimension dimension, long now) {
+        applyQuiet(now);
+        final int bit = dimension.ordinal();
+        long result = accumulatedMs[bit];
+        if ((state & (1 << bit)) != 0) {
+            result += Math.max(0L, now - activeSinceMs[bit]);
+        }
+        return result;
+    }
+
+    /** Set the total as of now. If the dimension is active, it is counted on top of it from now on. */
+    void setTotalMs(@NotNull Dimension dimension, long ms, long now) {
+        applyQuiet(now);
+        accumulatedMs[dimension.ordinal()] = Math.max(0L, ms);
+        activeSinceMs[dimension.ordinal()] = now;
+    }
+
+    /** Reset totals, active dimensions are counted from now on. */
+    void reset(long now) {
+        for (int i = 0; i < DIMENSIONS.length; i++) {
+            accumulatedMs[i] = 0L;
+            activeSinceMs[i] = now;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+import com.intellij.ui.JBColor;
+import com.intellij.util.ui.JBUI;
+import com.intellij.util.ui.UIUtil;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+
+/**
+ * Bar chart of counted time in the last {@link #DAYS} days.
+ *
+ * Bars are drawn into a cached image. Counting more time redraws only the bar of its day,
+ * the whole image is redrawn only when the scale, the size or the current day changes.
+ * All methods must be called on EDT.
+ */
+final class TimeTrackerHistoryChart extends JComponent {
+
+    static final int DAYS = 30;
+
+    private static final Color BAR = new JBColor(new Color(28, 152, 19), new Color(56, 113, 41));
+    private static final Color TODAY_BAR = new JBColor(new Color(200, 164, 23), new Color(163, 112, 17));
+    /** Scale is rounded up to whole hours, so that it doesn't change with every added second. */
+    private static final long SCALE_STEP_MS = 3600_000L;
+
+    private final ZoneId zone;
+    private final long[] dayMs = new long[DAYS];
+    /** Epoch day of the last bar, which is today. */
+    private long lastEpochDay;
+    private long scaleMs = SCALE_STEP_MS;
+
+    private BufferedImage image;
+    private boolean imageValid = false;
+    /** Bars to redraw, bit per bar index. */
+    private long dirtyBars = 0;
+
+    TimeTrackerHistoryChart(@NotNull ZoneId zone) {
+        this.zone = zone;
+        this.lastEpochDay = LocalDate.now(zone).toEpochDay();
+        setToolTipText("");
+    }
+
+    /** Replace all data with totals from history, {@code totals[DAYS - 1]} being today. */
+    void setDays(@NotNull long[] totals, long lastEpochDay) {
+        System.arraycopy(totals, 0, dayMs, 0, DAYS);
+        this.lastEpochDay = lastEpochDay;
+        rollTo(LocalDate.now(zone).toEpochDay());
+        rescale();
+        imageValid = false;
+        repaint();
+    }
+
+    /** Add counted interval. */
+    void add(long startMs, long endMs) {
+        while (startMs < endMs) {
+            final LocalDate day = Instant.ofEpochMilli(startMs).atZone(zone).toLocalDate();
+            final long dayEndMs = day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+            final long pieceEndMs = Math.min(endMs, dayEndMs);
+
+            final long epochDay = day.toEpochDay();
+            if (epochDay > lastEpochDay) {
+                rollTo(epochDay);
+            }
+            final int bar = (int) (DAYS - 1 - (lastEpochDay - epochDay));
+            if (bar >= 0) {
+                dayMs[bar] += pieceEndMs - startMs;
+                if (dayMs[bar] > scaleMs) {
+                    rescale();
+                    imageValid = false;
+                } else {
+                    dirtyBars |= 1L << bar;
+                }
+            }
+            startMs = pieceEndMs;
+        }
+        repaint();
+    }
+
+    private void rollTo(long epochDay) {
+        final long shift = epochDay - lastEpochDay;
+        if (shift <= 0) {
+            return;
+        }
+        if (shift >= DAYS) {
+            Arrays.fill(dayMs, 0L);
+        } else {
+            System.arraycopy(dayMs, (int) shift, dayMs, 0, DAYS - (int) shift);
+            Arrays.fill(dayMs, DAYS - (int) shift, DAYS, 0L);
+        }
+        lastEpochDay = epochDay;
+        imageValid = false;
+    }
+
+    private void rescale() {
+        long max = 0;
+        for (long ms : dayMs) {
+            max = Math.max(max, ms);
+        }
+        scaleMs = Math.max(SCALE_STEP_MS, (max + SCALE_STEP_MS - 1) / SCALE_STEP_MS * SCALE_STEP_MS);
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        return new Dimension(JBUI.scale(DAYS * 8), JBUI.scale(40));
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        final int width = getWidth();
+        final int height = getHeight();
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        if (LocalDate.now(zone).toEpochDay() > lastEpochDay) {
+            rollTo(LocalDate.now(zone).toEpochDay());
+        }
+
+        if (image == null || image.getWidth() != width || image.getHeight() != height) {
+            image = UIUtil.createImage(this, width, height, BufferedImage.TYPE_INT_ARGB);
+            imageValid = false;
+        }
+
+        final Graphics2D imageGraphics = image.createGraphics();
+        try {
+            if (!imageValid) {
+                for (int bar = 0; bar < DAYS; bar++) {
+                    paintBar(imageGraphics, bar, width, height);
+                }
+                imageValid = true;
+            } else {
+                long dirty = dirtyBars;
+                while (dirty != 0) {
+                    paintBar(imageGraphics, Long.numberOfTrailingZeros(dirty), width, height);
+                    dirty &= dirty - 1;
+                }
+            }
+            dirtyBars = 0;
+        } finally {
+            imageGraphics.dispose();
+        }
+        UIUtil.drawImage(g, image, 0, 0, null);
+    }
+
+    private int barX(int bar, int width) {
+        return bar * width / DAYS;
+    }
+
+    private void paintBar(@NotNull Graphics2D g, int bar, int width, int height) {
+        final int x = barX(bar, width);
+        final int barWidth = Math.max(1, barX(bar + 1, width) - x - 1);
+
+        final Composite composite = g.getComposite();
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(x, 0, barWidth + 1, height);
+        g.setComposite(composite);
+
+        final int barHeight = (int) Math.min(height, dayMs[bar] * height / scaleMs);
+        g.setColor(bar == DAYS - 1 ? TODAY_BAR : BAR);
+        g.fillRect(x, height - barHeight, barWidth, barHeight);
+    }
+
+    @Override
+    public String getToolTipText(MouseEvent event) {
+        final int width = getWidth();
+        if (width <= 0) {
+            return null;
+        }
+        final int bar = Math.max(0, Math.min(DAYS - 1, event.getX() * DAYS / width));
+        final LocalDate day = LocalDate.ofEpochDay(lastEpochDay - (DAYS - 1 - bar));
+        return day + ": " + TimeTrackerComponent.millisecondsToString(dayMs[bar]);
+    }
+}
@@ -0,0 +1,284 @@
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Append-only history of counted time, one {@code startMs<TAB>endMs[<TAB>tag]...} line per closed interval.
+ * Plain Java, so that tools running outside of the IDE (see {@link TimeTrackerReport}) can read it.
+ */
+final class TimeTrackerJournal {
+
+    static final String EXTENSION = ".journal";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path file;
+
+    TimeTrackerJournal(@NotNull Path file) {
+        this.file = file;
+    }
+
+    @NotNull
+    Path getFile() {
+        return file;
+    }
+
+    synchronized void append(long startMs, long endMs, @NotNull List<String> tags) throws IOException {
+        final Path parent = file.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        final StringBuilder line = new StringBuilder(32).append(startMs).append('\t').append(endMs);
+        for (String tag : tags) {
+            line.append('\t');
+            for (int i = 0; i < tag.length(); i++) {
+                final char c = tag.charAt(i);
+                line.append(c == '\t' || c == '\n' || c == '\r' ? ' ' : c);
+            }
+        }
+        line.append('\n');
+        Files.write(file, line.toString().getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /** Receives parsed journal records. Called without any allocation per record. */
+    interface Visitor {
+        void interval(long startMs, long endMs);
+    }
+
+    /**
+     * Atomically replace the journal with a rewritten copy of its first {@code copiedBytes} bytes.
+     * Whatever was appended since the copy was made is carried over, appends wait until the swap is done.
+     */
+    synchronized void replaceWith(@NotNull Path rewritten, long copiedBytes) throws IOException {
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(rewritten, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            long position = copiedBytes;
+            final long size = source.size();
+            while (position < size) {
+                position += source.transferTo(position, size - position, target);
+            }
+            target.force(true);
+        }
+        Files.move(rewritten, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /** Receives parsed journal records together with their tags. */
+    interface TaggedVisitor {
+        void interval(long startMs, long endMs, @NotNull List<String> tags);
+    }
+
+    /** Read the whole journal, including tags. Allocates per record, meant for building indices, not for reports. */
+    static void readTagged(@NotNull Path file, @NotNull TaggedVisitor visitor) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                parseTagged(line, visitor);
+            }
+        }
+    }
+
+    /**
+     * Parse one journal line into visitor.
+     * @return false if the line is malformed and was skipped
+     */
+    private static boolean parseTagged(@NotNull String line, @NotNull TaggedVisitor visitor) {
+        final String[] fields = line.split("\t");
+        if (fields.length < 2) {
+            return false;
+        }
+        final long startMs;
+        final long endMs;
+        try {
+            startMs = Long.parseLong(fields[0]);
+            endMs = Long.parseLong(fields[1]);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (endMs < startMs) {
+            return false;
+        }
+        final List<String> tags = new ArrayList<>(fields.length - 2);
+        for (int i = 2; i < fields.length; i++) {
+            if (!fields[i].isEmpty()) {
+                tags.add(fields[i]);
+            }
+        }
+        visitor.interval(startMs, endMs, tags);
+        return true;
+    }
+
+    /** Read the whole journal. */
+    static void read(@NotNull Path file, @NotNull Visitor visitor) throws IOException {
+        read(file, 0L, Long.MAX_VALUE, visitor);
+    }
+
+    /**
+     * Read all lines which start in the byte range [from, to) of the file.
+     * A line that straddles {@code from} belongs to the previous range, so a file may be split into
+     * arbitrary ranges and each line is still visited exactly once.
+     */
+    static void read(@NotNull Path file, long from, long to, @NotNull Visitor visitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (from >= to || from >= size) {
+                return;
+            }
+            final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+            boolean skipping = false;
+            if (from > 0) {
+                buffer.limit(1);
+                channel.read(buffer, from - 1);
+                skipping = buffer.get(0) != '\n';
+            }
+
+            final LineParser parser = new LineParser(visitor);
+            long position = from;
+            while (position < size) {
+                buffer.clear();
+                final int read = channel.read(buffer, position);
+                if (read <= 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    final byte b = buffer.get(i);
+                    if (b == '\n') {
+                        if (!skipping) {
+                            parser.endLine();
+                        }
+                        skipping = false;
+                        if (position + i + 1 >= to) {
+                            return;
+                        }
+                    } else if (!skipping) {
+                        parser.accept(b);
+                    }
+                }
+                position += read;
+            }
+            if (!skipping) {
+                parser.endLine();
+            }
+        }
+    }
+
+    /**
+     * Pull-style reader, for when records of several journals must be interleaved.
+     * Holds only a read buffer and the current record, so journals of any size can be walked.
+     */
+    static final class Cursor implements Closeable, TaggedVisitor {
+        private final BufferedReader reader;
+        private boolean hasRecord = false;
+
+        private long startMs;
+        private long endMs;
+        @NotNull
+        private List<String> tags = Collections.emptyList();
+
+        Cursor(@NotNull Path file) throws IOException {
+            this.reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        }
+
+        /** Move to the next record. Returns false at the end of the journal. */
+        boolean next() throws IOException {
+            hasRecord = false;
+            String line;
+            while (!hasRecord && (line = reader.readLine()) != null) {
+                parseTagged(line, this);
+            }
+            return hasRecord;
+        }
+
+        long startMs() {
+            return startMs;
+        }
+
+        long endMs() {
+            return endMs;
+        }
+
+        @NotNull
+        List<String> tags() {
+            return tags;
+        }
+
+        @Override
+        public void interval(long startMs, long endMs, @NotNull List<String> tags) {
+            this.startMs = startMs;
+            this.endMs = endMs;
+            this.tags = tags;
+            this.hasRecord = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    /** Parses one line at a time, byte by byte. Unknown trailing fields are ignored, malformed lines are skipped. */
+    private static final class LineParser {
+        private final Visitor visitor;
+
+        private int field = 0;
+        private boolean digitsInField = false;
+        private boolean malformed = false;
+        private long value = 0;
+        private long startMs = 0;
+        private long endMs = 0;
+
+        LineParser(Visitor visitor) {
+            this.visitor = visitor;
+        }
+
+        void accept(byte b) {
+            if (malformed || field > 1) {
+                return;
+            }
+            if (b >= '0' && b <= '9') {
+                value = value * 10 + (b - '0');
+                digitsInField = true;
+            } else if (b == '\t' && digitsInField) {
+                closeField();
+            } else if (b != '\r') {
+                malformed = true;
+            }
+        }
+
+        private void closeField() {
+            if (field == 0) {
+                startMs = value;
+            } else if (field == 1) {
+                endMs = value;
+            }
+            field++;
+            value = 0;
+            digitsInField = false;
+        }
+
+        void endLine() {
+            if (!malformed && field == 1 && digitsInField) {
+                closeField();
+            }
+            if (!malformed && field >= 2 && endMs >= startMs) {
+                visitor.interval(startMs, endMs);
+            }
+            field = 0;
+            digitsInField = false;
+            malformed = false;
+            value = 0;
+        }
+    }
+}
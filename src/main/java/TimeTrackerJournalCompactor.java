@@ -0,0 +1,279 @@
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps {@link TimeTrackerJournal}s bounded: raw intervals older than a few days are rolled up into one
+ * record per hour, and hourly records older than that into one record per day.
+ *
+ * A rollup is written as an ordinary interval lasting for the time counted in its bucket, tagged {@link #HOURLY_TAG}
+ * or {@link #DAILY_TAG} followed by the tags of the intervals it sums, so every journal reader keeps working and
+ * tag queries still find compacted time. Each distinct tag set in a bucket gets its own rollup, laid out one
+ * after another from the start of the bucket, so rollups never overlap each other.
+ * The compacted journal is written next to the original, slowed down to spare the disk, and then swapped in atomically.
+ */
+final class TimeTrackerJournalCompactor {
+
+    static final String ROLLUP_PREFIX = "rollup:";
+    static final String HOURLY_TAG = ROLLUP_PREFIX + "hour";
+    static final String DAILY_TAG = ROLLUP_PREFIX + "day";
+
+    /** Pause for {@link #THROTTLE_PAUSE_MS} after every this many bytes read. */
+    private static final long THROTTLE_BYTES = 1024 * 1024;
+    private static final long THROTTLE_PAUSE_MS = 250;
+
+    private final ZoneId zone;
+    private final long hourlyBeforeMs;
+    private final long dailyBeforeMs;
+
+    /**
+     * @param rawDays how many days of raw intervals to keep
+     * @param hourlyDays how many days of hourly rollups to keep, older are rolled up to days
+     */
+    TimeTrackerJournalCompactor(@NotNull ZoneId zone, long now, int rawDays, int hourlyDays) {
+        this.zone = zone;
+        final LocalDate today = Instant.ofEpochMilli(now).atZone(zone).toLocalDate();
+        this.hourlyBeforeMs = today.minusDays(Math.max(0, rawDays)).atStartOfDay(zone).toInstant().toEpochMilli();
+        this.dailyBeforeMs = today.minusDays(Math.max(rawDays, hourlyDays)).atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Compact the journal, if it has anything to compact.
+     * @return true if the journal was rewritten
+     */
+    boolean compact(@NotNull TimeTrackerJournal journal) throws IOException, InterruptedException {
+        final Path file = journal.getFile();
+        final Map<Long, Long> takenMsByBucket = new HashMap<>();
+        if (!Files.exists(file) || !needsCompaction(file, takenMsByBucket)) {
+            return false;
+        }
+
+        final long snapshotSize = Files.size(file);
+        final Path temp = file.resolveSibling(file.getFileName() + ".compacting");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             InputStream in = Channels.newInputStream(channel);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+             BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            final Rollup rollup = new Rollup(writer, takenMsByBucket);
+            long readBytes = 0;
+            long throttledAt = 0;
+            String line;
+            // Lines appended after the snapshot are copied over verbatim during the swap
+            while (readBytes < snapshotSize && (line = reader.readLine()) != null) {
+                readBytes += line.getBytes(StandardCharsets.UTF_8).length + 1;
+                rollup.line(line);
+
+                if (readBytes - throttledAt >= THROTTLE_BYTES) {
+                    throttledAt = readBytes;
+                    writer.flush();
+                    TimeUnit.MILLISECONDS.sleep(THROTTLE_PAUSE_MS);
+                }
+            }
+            rollup.flush();
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        journal.replaceWith(temp, snapshotSize);
+        return true;
+    }
+
+    /**
+     * Intervals counted in late are appended out of start order, so an old record may follow recent ones
+     * and the whole journal has to be looked at. Rollups which stay as they are note in {@code takenMsByBucket}
+     * how much of their bucket they take, so that late intervals rolled up into the same bucket are laid after them.
+     */
+    private boolean needsCompaction(@NotNull Path file, @NotNull Map<Long, Long> takenMsByBucket) throws IOException {
+        boolean needed = false;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] fields = line.split("\t");
+                if (fields.length < 2) {
+                    continue;
+                }
+                final long startMs;
+                final long endMs;
+                try {
+                    startMs = Long.parseLong(fields[0]);
+                    endMs = Long.parseLong(fields[1]);
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                if (endMs < startMs) {
+                    continue;
+                }
+                final boolean daily = fields.length > 2 && DAILY_TAG.equals(fields[2]);
+                final boolean hourly = fields.length > 2 && HOURLY_TAG.equals(fields[2]);
+                if ((daily || hourly) && keptAsIs(startMs, hourly)) {
+                    final long bucketStartMs = bucketStart(startMs, daily);
+                    takenMsByBucket.merge(bucketStartMs, endMs - bucketStartMs, Math::max);
+                } else if (startMs < hourlyBeforeMs && !daily) {
+                    needed = true;
+                }
+            }
+        }
+        return needed;
+    }
+
+    /** Whether a rollup starting at given instant is recent enough to stay as it is. */
+    private boolean keptAsIs(long startMs, boolean hourly) {
+        return startMs >= hourlyBeforeMs || (hourly && startMs >= dailyBeforeMs);
+    }
+
+    private long bucketStart(long ms, boolean daily) {
+        final ZonedDateTime time = Instant.ofEpochMilli(ms).atZone(zone);
+        if (daily) {
+            return time.toLocalDate().atStartOfDay(zone).toInstant().toEpochMilli();
+        }
+        return time.truncatedTo(ChronoUnit.HOURS).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Sums pieces of intervals into the current bucket, per tag set, and writes it out when the next piece falls elsewhere.
+     * Tag sets are kept as the tab separated tags, the way they are written.
+     */
+    private final class Rollup {
+        private final BufferedWriter writer;
+
+        private long bucketStartMs = Long.MIN_VALUE;
+        private long bucketEndMs = Long.MIN_VALUE;
+        private String bucketTag = null;
+        private final Map<String, long[]> bucketMsByTags = new LinkedHashMap<>();
+        /** How much of each bucket is taken by rollups kept or written so far, in case a late interval reopens it. */
+        private final Map<Long, Long> writtenMsByBucket;
+
+        Rollup(BufferedWriter writer, Map<Long, Long> takenMsByBucket) {
+            this.writer = writer;
+            this.writtenMsByBucket = takenMsByBucket;
+        }
+
+        void line(@NotNull String line) throws IOException {
+            final String[] fields = line.split("\t");
+            long startMs;
+            final long endMs;
+            try {
+                startMs = Long.parseLong(fields[0]);
+                endMs = fields.length > 1 ? Long.parseLong(fields[1]) : -1;
+            } catch (NumberFormatException e) {
+                return;
+            }
+            if (endMs < startMs) {
+                return;
+            }
+            final boolean rolledUp = fields.length > 2 && (HOURLY_TAG.equals(fields[2]) || DAILY_TAG.equals(fields[2]));
+            final String tags = joinTags(fields, rolledUp ? 3 : 2);
+
+            if (rolledUp) {
+                // Already a sum for its bucket, move it as a whole
+                if (keptAsIs(startMs, HOURLY_TAG.equals(fields[2]))) {
+                    flush();
+                    writer.write(line);
+                    writer.write('\n');
+                } else {
+                    add(startMs, endMs - startMs, tags);
+                }
+                return;
+            }
+
+            while (startMs < endMs && startMs < hourlyBeforeMs) {
+                final long pieceEndMs = Math.min(endMs, bucketEnd(startMs));
+                add(startMs, pieceEndMs - startMs, tags);
+                startMs = pieceEndMs;
+            }
+            if (startMs < endMs) {
+                flush();
+                writer.write(Long.toString(startMs));
+                writer.write('\t');
+                writer.write(Long.toString(endMs));
+                for (int i = 2; i < fields.length; i++) {
+                    writer.write('\t');
+                    writer.write(fields[i]);
+                }
+                writer.write('\n');
+            }
+        }
+
+        private long bucketEnd(long ms) {
+            if (ms >= bucketStartMs && ms < bucketEndMs) {
+                return bucketEndMs;
+            }
+            final ZonedDateTime time = Instant.ofEpochMilli(ms).atZone(zone);
+            if (ms < dailyBeforeMs) {
+                return time.toLocalDate().plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+            }
+            return time.truncatedTo(ChronoUnit.HOURS).plusHours(1).toInstant().toEpochMilli();
+        }
+
+        @NotNull
+        private String joinTags(@NotNull String[] fields, int from) {
+            final StringBuilder tags = new StringBuilder();
+            for (int i = from; i < fields.length; i++) {
+                if (!fields[i].isEmpty()) {
+                    if (tags.length() > 0) {
+                        tags.append('\t');
+                    }
+                    tags.append(fields[i]);
+                }
+            }
+            return tags.toString();
+        }
+
+        private void add(long ms, long durationMs, @NotNull String tags) throws IOException {
+            if (ms < bucketStartMs || ms >= bucketEndMs) {
+                flush();
+                bucketStartMs = bucketStart(ms, ms < dailyBeforeMs);
+                bucketTag = ms < dailyBeforeMs ? DAILY_TAG : HOURLY_TAG;
+                bucketEndMs = bucketEnd(ms);
+            }
+            bucketMsByTags.computeIfAbsent(tags, t -> new long[1])[0] += durationMs;
+        }
+
+        void flush() throws IOException {
+            long writtenMs = writtenMsByBucket.getOrDefault(bucketStartMs, 0L);
+            for (Map.Entry<String, long[]> entry : bucketMsByTags.entrySet()) {
+                final long ms = entry.getValue()[0];
+                if (ms <= 0) {
+                    continue;
+                }
+                writer.write(Long.toString(bucketStartMs + writtenMs));
+                writer.write('\t');
+                writer.write(Long.toString(bucketStartMs + writtenMs + ms));
+                writer.write('\t');
+                writer.write(bucketTag);
+                if (!entry.getKey().isEmpty()) {
+                    writer.write('\t');
+                    writer.write(entry.getKey());
+                }
+                writer.write('\n');
+                writtenMs += ms;
+            }
+            if (writtenMs > 0) {
+                writtenMsByBucket.put(bucketStartMs, writtenMs);
+            }
+            bucketStartMs = Long.MIN_VALUE;
+            bucketEndMs = Long.MIN_VALUE;
+            bucketMsByTags.clear();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Merges {@link TimeTrackerJournal}s of the same project recorded on several machines into one canonical journal.
+ *
+ * Inputs are streamed through a heap of {@link TimeTrackerJournal.Cursor}s, one per journal. Overlapping and touching
+ * intervals are coalesced, so time counted on two machines at once is only counted once, and each merged interval
+ * carries the union of the tags of the intervals it was made of.
+ *
+ * The tracker appends intervals as they close, so a journal is ordered by start time except for intervals
+ * recorded late (idle time counted in after work resumed). Each journal is read once, through a window of the
+ * next {@link #REORDER_WINDOW} records kept sorted, so a record recorded up to that many records late is merged
+ * in its place. Merging n intervals from k journals takes O(n log(k + w)) time and O(k w) memory for window w.
+ * A record even later than that is still counted, but on its own: it is written out of order and may overlap
+ * intervals written before it.
+ *
+ * Usage: {@code java TimeTrackerJournalMerger <output> <input>...}
+ */
+public final class TimeTrackerJournalMerger {
+
+    /** Records read ahead of each journal. A day of tracking is a few hundred records, so this covers weeks. */
+    static final int REORDER_WINDOW = 10_000;
+
+    /** Receives the merged, non-overlapping intervals in ascending order. */
+    interface Output {
+        void interval(long startMs, long endMs, @NotNull Collection<String> tags) throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: TimeTrackerJournalMerger <output> <input>...");
+            System.exit(2);
+            return;
+        }
+        final List<Path> inputs = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            inputs.add(Paths.get(args[i]));
+        }
+
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(Paths.get(args[0])), StandardCharsets.UTF_8))) {
+            final long totalMs = merge(inputs, (startMs, endMs, tags) -> {
+                writer.write(Long.toString(startMs));
+                writer.write('\t');
+                writer.write(Long.toString(endMs));
+                for (String tag : tags) {
+                    writer.write('\t');
+                    writer.write(tag);
+                }
+                writer.write('\n');
+            });
+            System.out.println("Merged total\t" + ((totalMs + 500L) / 1000L));
+        }
+    }
+
+    /**
+     * Merge given journals into output.
+     * @return total length of merged intervals in milliseconds
+     */
+    static long merge(@NotNull List<Path> journals, @NotNull Output output) throws IOException {
+        return merge(journals, REORDER_WINDOW, output);
+    }
+
+    static long merge(@NotNull List<Path> journals, int reorderWindow, @NotNull Output output) throws IOException {
+        final PriorityQueue<Input> heap = new PriorityQueue<>(Math.max(1, journals.size()),
+                Comparator.comparingLong((Input input) -> input.current.startMs).thenComparingLong(input -> input.current.endMs));
+        final List<Input> opened = new ArrayList<>(journals.size());
+        try {
+            for (Path journal : journals) {
+                final Input input = new Input(new TimeTrackerJournal.Cursor(journal), reorderWindow);
+                opened.add(input);
+                if (input.next()) {
+                    heap.add(input);
+                }
+            }
+
+            long totalMs = 0;
+            long currentStartMs = 0;
+            long currentEndMs = Long.MIN_VALUE;
+            final Set<String> currentTags = new LinkedHashSet<>();
+
+            while (!heap.isEmpty()) {
+                final Input input = heap.poll();
+                final Record record = input.current;
+
+                if (currentEndMs != Long.MIN_VALUE && record.startMs < currentStartMs) {
+                    // Later than the window, the intervals around it are already written
+                    output.interval(record.startMs, record.endMs, orderTags(new LinkedHashSet<>(record.tags)));
+                    totalMs += record.endMs - record.startMs;
+                } else if (record.startMs > currentEndMs) {
+                    if (currentEndMs != Long.MIN_VALUE) {
+                        output.interval(currentStartMs, currentEndMs, orderTags(currentTags));
+                        totalMs += currentEndMs - currentStartMs;
+                    }
+                    currentStartMs = record.startMs;
+                    currentEndMs = record.endMs;
+                    currentTags.clear();
+                    currentTags.addAll(record.tags);
+                } else {
+                    currentEndMs = Math.max(currentEndMs, record.endMs);
+                    currentTags.addAll(record.tags);
+                }
+
+                if (input.next()) {
+                    heap.add(input);
+                }
+            }
+
+            if (currentEndMs != Long.MIN_VALUE) {
+                output.interval(currentStartMs, currentEndMs, orderTags(currentTags));
+                totalMs += currentEndMs - currentStartMs;
+            }
+            return totalMs;
+        } finally {
+            for (Input input : opened) {
+                input.cursor.close();
+            }
+        }
+    }
+
+    /** Rollup markers stay in front, where {@link TimeTrackerJournalCompactor} looks for them. */
+    @NotNull
+    private static List<String> orderTags(@NotNull Set<String> tags) {
+        final List<String> ordered = new ArrayList<>(tags.size());
+        for (String tag : tags) {
+            if (tag.startsWith(TimeTrackerJournalCompactor.ROLLUP_PREFIX)) {
+                ordered.add(tag);
+            }
+        }
+        for (String tag : tags) {
+            if (!tag.startsWith(TimeTrackerJournalCompactor.ROLLUP_PREFIX)) {
+                ordered.add(tag);
+            }
+        }
+        return ordered;
+    }
+
+    /** Records of one journal, sorted within a window read ahead. */
+    private static final class Input {
+        final TimeTrackerJournal.Cursor cursor;
+        private final int windowSize;
+        private final PriorityQueue<Record> window;
+        private boolean exhausted = false;
+        Record current;
+
+        Input(@NotNull TimeTrackerJournal.Cursor cursor, int windowSize) {
+            this.cursor = cursor;
+            this.windowSize = Math.max(1, windowSize);
+            this.window = new PriorityQueue<>(Math.min(this.windowSize, 1024),
+                    Comparator.comparingLong((Record record) -> record.startMs).thenComparingLong(record -> record.endMs));
+        }
+
+        /** Move to the next record. Returns false at the end of the journal. */
+        boolean next() throws IOException {
+            while (!exhausted && window.size() < windowSize) {
+                if (cursor.next()) {
+                    window.add(new Record(cursor.startMs(), cursor.endMs(), cursor.tags()));
+                } else {
+                    exhausted = true;
+                }
+            }
+            current = window.poll();
+            return current != null;
+        }
+    }
+
+    private static final class Record {
+        final long startMs;
+        final long endMs;
+        final List<String> tags;
+
+        Record(long startMs, long endMs, @NotNull List<String> tags) {
+            this.startMs = startMs;
+            this.endMs = endMs;
+            this.tags = tags;
+        }
+    }
+}
@@ -1,12 +1,35 @@
+import java.util.HashMap;
+import java.util.Map;
+
 @SuppressWarnings("WeakerAccess")
 public final class TimeTrackerPersistentState {
 
     public long totalTimeSeconds = 0;
+    /** Counted time per task (changelist), reset independently of {@link #totalTimeSeconds}. */
+    public Map<String, Long> taskTimeSeconds = new HashMap<>();
+    public long buildTimeSeconds = 0;
+    public long testTimeSeconds = 0;
+    public long debugTimeSeconds = 0;
+    public long timeSinceLastCommitSeconds = 0;
+    public long editingTimeSeconds = 0;
+    public long readingTimeSeconds = 0;
+    public long awayTimeSeconds = 0;
+    public long ideInactiveTimeSeconds = 0;
 
     public long idleThresholdMs = 2 * 60 * 1000;
     public int autoCountIdleSeconds = 30;
     public boolean pauseOtherTrackerInstances = true;
     public boolean autoStart = true;
+    public String syncEndpoint = "";
+    /** Journal keeps raw intervals this long, then hourly sums until {@link #hourlyHistoryDays}, then daily sums. */
+    public int rawHistoryDays = 30;
+    public int hourlyHistoryDays = 365;
+
+    public String budgetRules = "";
+    public long budgetDayStartMs = 0;
+    public long budgetDaySeconds = 0;
+    public long budgetWeekStartMs = 0;
+    public long budgetWeekSeconds = 0;
 
     public long naggedAbout = 0;
 
@@ -1,4 +1,5 @@
 import com.intellij.icons.AllIcons;
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.ui.ComboBox;
 import com.intellij.openapi.ui.MessageType;
 import com.intellij.openapi.ui.popup.Balloon;
@@ -17,10 +18,14 @@ import javax.swing.event.HyperlinkEvent;
 import javax.swing.text.Document;
 import javax.swing.text.JTextComponent;
 import java.awt.*;
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
 import java.beans.PropertyChangeEvent;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.function.Consumer;
 import java.util.logging.Level;
@@ -32,13 +37,49 @@ final class TimeTrackerPopupContent extends Box {
 
     JBPopup popup;
 
-    TimeTrackerPopupContent(TimeTrackerComponent component) {
+    private final TimeTrackerComponent component;
+
+    private final ComboBox<String> modeComboBox;
+    private final JSpinner idleThresholdSpinner;
+    private final JSpinner autoCountSpinner;
+    private final JCheckBox autoPauseCheckBox;
+    private final JCheckBox autoStartCheckBox;
+    private final JCheckBox awayCheckBox;
+    private final JTextField budgetsField;
+    private final JTextField syncEndpointField;
+    private final JLabel activityLabel;
+    private final JLabel dimensionsLabel;
+    private final JPanel tasksPanel;
+    /** Set while {@link #refresh()} fills the controls, so their listeners don't write the values back. */
+    private boolean refreshing = false;
+
+    /**
+     * Built once per widget and then only {@link #refresh() refreshed} before being shown.
+     * @param parent history chart stops receiving updates when this is disposed
+     */
+    TimeTrackerPopupContent(TimeTrackerComponent component, Disposable parent) {
         super(BoxLayout.Y_AXIS);
+        this.component = component;
 
         final int insetLR = 10;
         final int insetTB = 5;
         this.setBorder(BorderFactory.createEmptyBorder(insetTB, insetLR, insetTB, insetLR));
 
+        {
+            final ZoneId zone = ZoneId.systemDefault();
+            final TimeTrackerHistoryChart historyChart = new TimeTrackerHistoryChart(zone);
+            this.add(historyChart);
+            component.addSessionListener(parent, index -> {
+                final LocalDate today = LocalDate.now(zone);
+                final long[] totals = new long[TimeTrackerHistoryChart.DAYS];
+                for (int i = 0; i < totals.length; i++) {
+                    final LocalDate day = today.minusDays(totals.length - 1 - i);
+                    totals[i] = index.sumDurationMs(TimeTrackerSessionIndex.tag(TimeTrackerSessionIndex.DAY_PREFIX + day));
+                }
+                SwingUtilities.invokeLater(() -> historyChart.setDays(totals, today.toEpochDay()));
+            }, (startMs, endMs) -> SwingUtilities.invokeLater(() -> historyChart.add(startMs, endMs)));
+        }
+
         final JPanel optionsPanel = new JPanel(new GridLayout(0, 2, 4, 0));
         this.add(optionsPanel);
 
@@ -47,18 +88,22 @@ final class TimeTrackerPopupContent extends Box {
                     "Pause after (sec):",
                     "Stop after (sec):"
             };
-            final ComboBox<String> modeComboBox = new ComboBox<>(modes);
-            modeComboBox.setSelectedIndex(component.isStopWhenIdleRatherThanPausing() ? 1 : 0);
+            modeComboBox = new ComboBox<>(modes);
             modeComboBox.addActionListener(e -> {
-                component.setStopWhenIdleRatherThanPausing(modeComboBox.getSelectedIndex() == 1);
+                if (!refreshing) {
+                    component.setStopWhenIdleRatherThanPausing(modeComboBox.getSelectedIndex() == 1);
+                }
             });
             modeComboBox.setAlignmentX(1f);
             optionsPanel.add(modeComboBox);
 
-            final JSpinner idleThresholdSpinner = new JSpinner(new SpinnerNumberModel(TimeTrackerComponent.msToS(component.getIdleThresholdMs()), 0, Integer.MAX_VALUE, 10));
+            idleThresholdSpinner = new JSpinner(new SpinnerNumberModel(TimeTrackerComponent.msToS(component.getIdleThresholdMs()), 0, Integer.MAX_VALUE, 10));
             optionsPanel.add(idleThresholdSpinner);
-            idleThresholdSpinner.addChangeListener(ce ->
-                    component.setIdleThresholdMs(((Number) idleThresholdSpinner.getValue()).longValue() * 1000));
+            idleThresholdSpinner.addChangeListener(ce -> {
+                if (!refreshing) {
+                    component.setIdleThresholdMs(((Number) idleThresholdSpinner.getValue()).longValue() * 1000);
+                }
+            });
         }
 
         {
@@ -84,16 +129,18 @@ final class TimeTrackerPopupContent extends Box {
 
         {
             optionsPanel.add(new JLabel("Auto-count pauses shorter than (sec):", JLabel.RIGHT));
-            final JSpinner autoCountSpinner = new JSpinner(new SpinnerNumberModel(component.getAutoCountIdleSeconds(), 0, Integer.MAX_VALUE, 10));
+            autoCountSpinner = new JSpinner(new SpinnerNumberModel(component.getAutoCountIdleSeconds(), 0, Integer.MAX_VALUE, 10));
             optionsPanel.add(autoCountSpinner);
-            autoCountSpinner.addChangeListener(ce ->
-                    component.setAutoCountIdleSeconds(((Number) autoCountSpinner.getValue()).intValue()));
+            autoCountSpinner.addChangeListener(ce -> {
+                if (!refreshing) {
+                    component.setAutoCountIdleSeconds(((Number) autoCountSpinner.getValue()).intValue());
+                }
+            });
         }
 
         {
             optionsPanel.add(new JLabel("Pause other IDE windows when this one activates:", JLabel.RIGHT));
-            final JCheckBox autoPauseCheckBox = new JCheckBox();
-            autoPauseCheckBox.setSelected(component.isPauseOtherTrackerInstances());
+            autoPauseCheckBox = new JCheckBox();
             autoPauseCheckBox.setHorizontalAlignment(SwingConstants.CENTER);
             autoPauseCheckBox.setVerticalAlignment(SwingConstants.CENTER);
             optionsPanel.add(autoPauseCheckBox);
@@ -102,6 +149,21 @@ final class TimeTrackerPopupContent extends Box {
             });
         }
 
+        {
+            activityLabel = new JLabel();
+            activityLabel.setAlignmentX(0.5f);
+            this.add(activityLabel);
+
+            dimensionsLabel = new JLabel();
+            dimensionsLabel.setAlignmentX(0.5f);
+            this.add(dimensionsLabel);
+        }
+
+        {
+            tasksPanel = new JPanel(new GridLayout(0, 3, 4, 0));
+            this.add(tasksPanel);
+        }
+
         {
             final Box timeButtons = Box.createHorizontalBox();
 
@@ -129,14 +191,97 @@ final class TimeTrackerPopupContent extends Box {
 
         {
             optionsPanel.add(new JLabel("Auto start on typing:", JLabel.RIGHT));
-            final JCheckBox autoStartCheckBox = new JCheckBox();
+            autoStartCheckBox = new JCheckBox();
             autoStartCheckBox.setHorizontalAlignment(SwingConstants.CENTER);
             autoStartCheckBox.setVerticalAlignment(SwingConstants.CENTER);
-            autoStartCheckBox.setSelected(component.isAutoStart());
             optionsPanel.add(autoStartCheckBox);
             autoStartCheckBox.addActionListener(al -> {
                 component.setAutoStart(autoStartCheckBox.isSelected());
             });
         }
+
+        {
+            optionsPanel.add(new JLabel("Away (meeting, break):", JLabel.RIGHT));
+            awayCheckBox = new JCheckBox();
+            awayCheckBox.setHorizontalAlignment(SwingConstants.CENTER);
+            awayCheckBox.setVerticalAlignment(SwingConstants.CENTER);
+            optionsPanel.add(awayCheckBox);
+            awayCheckBox.addActionListener(al -> component.setAway(awayCheckBox.isSelected()));
+        }
+
+        {
+            optionsPanel.add(new JLabel("Budgets and goals:", JLabel.RIGHT));
+            budgetsField = new JTextField();
+            budgetsField.setToolTipText("Comma separated, e.g. day<8h, week<40h, day>4h30m (< is a budget, > is a goal)");
+            optionsPanel.add(budgetsField);
+            budgetsField.addActionListener(al -> component.setBudgetRules(budgetsField.getText()));
+            budgetsField.addFocusListener(new FocusAdapter() {
+                @Override
+                public void focusLost(FocusEvent e) {
+                    component.setBudgetRules(budgetsField.getText());
+                }
+            });
+        }
+
+        {
+            optionsPanel.add(new JLabel("Upload sessions to (URL, empty to disable):", JLabel.RIGHT));
+            syncEndpointField = new JTextField();
+            optionsPanel.add(syncEndpointField);
+            syncEndpointField.addActionListener(al -> component.setSyncEndpoint(syncEndpointField.getText()));
+            syncEndpointField.addFocusListener(new FocusAdapter() {
+                @Override
+                public void focusLost(FocusEvent e) {
+                    component.setSyncEndpoint(syncEndpointField.getText());
+                }
+            });
+        }
+
+        refresh();
+    }
+
+    /** Update all controls to the current state of the tracker. */
+    void refresh() {
+        refreshing = true;
+        try {
+            modeComboBox.setSelectedIndex(component.isStopWhenIdleRatherThanPausing() ? 1 : 0);
+            idleThresholdSpinner.setValue(TimeTrackerComponent.msToS(component.getIdleThresholdMs()));
+            autoCountSpinner.setValue(component.getAutoCountIdleSeconds());
+        } finally {
+            refreshing = false;
+        }
+        autoPauseCheckBox.setSelected(component.isPauseOtherTrackerInstances());
+        autoStartCheckBox.setSelected(component.isAutoStart());
+        awayCheckBox.setSelected(component.isAway());
+        budgetsField.setText(component.getBudgetRules());
+        syncEndpointField.setText(component.getSyncEndpoint());
+
+        activityLabel.setText(
+                "Build: " + TimeTrackerComponent.millisecondsToString(component.getActivityTimeMs(TimeTrackerActivityCounters.Category.BUILD))
+                + "   Test: " + TimeTrackerComponent.millisecondsToString(component.getActivityTimeMs(TimeTrackerActivityCounters.Category.TEST))
+                + "   Debug: " + TimeTrackerComponent.millisecondsToString(component.getActivityTimeMs(TimeTrackerActivityCounters.Category.DEBUG)));
+        dimensionsLabel.setText(
+                "Editing: " + TimeTrackerComponent.millisecondsToString(component.getDimensionTimeMs(TimeTrackerDimensions.Dimension.EDITING))
+                + "   Reading: " + TimeTrackerComponent.millisecondsToString(component.getDimensionTimeMs(TimeTrackerDimensions.Dimension.READING))
+                + "   Away: " + TimeTrackerComponent.millisecondsToString(component.getDimensionTimeMs(TimeTrackerDimensions.Dimension.AWAY))
+                + "   IDE inactive: " + TimeTrackerComponent.millisecondsToString(component.getDimensionTimeMs(TimeTrackerDimensions.Dimension.IDE_INACTIVE)));
+
+        tasksPanel.removeAll();
+        final String activeTask = component.getActiveTask();
+        component.getTaskTimesMs().forEach((task, timeMs) -> {
+            final JLabel taskLabel = new JLabel(task, JLabel.RIGHT);
+            if (task.equals(activeTask)) {
+                taskLabel.setFont(taskLabel.getFont().deriveFont(Font.BOLD));
+            }
+            tasksPanel.add(taskLabel);
+            tasksPanel.add(new JLabel(TimeTrackerComponent.millisecondsToString(timeMs), JLabel.CENTER));
+            final JButton resetButton = new JButton("Reset");
+            resetButton.setToolTipText("Reset time of this task only");
+            resetButton.addActionListener(e1 -> {
+                component.resetTaskTime(task);
+                refresh();
+            });
+            tasksPanel.add(resetButton);
+        });
+        tasksPanel.revalidate();
     }
 }
\ No newline at end of file
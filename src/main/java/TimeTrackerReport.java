@@ -0,0 +1,211 @@
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Headless report over a directory of exported {@link TimeTrackerJournal} files.
+ *
+ * Expected layout is {@code <root>/<user>/<project>.journal}. Journals are split into byte ranges
+ * which are parsed in parallel and streamed, so only the aggregates are ever kept in memory.
+ *
+ * Usage: {@code java TimeTrackerReport <root> [--threads N] [--zone ZONE]}
+ * Output is tab separated: {@code user|project|day <TAB> key <TAB> seconds}.
+ */
+public final class TimeTrackerReport {
+
+    /** Journals larger than this are split into several tasks. */
+    private static final long CHUNK_BYTES = 32L * 1024 * 1024;
+    private static final String NO_USER = "-";
+
+    public static void main(String[] args) throws IOException {
+        Path root = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        ZoneId zone = ZoneId.systemDefault();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--zone":
+                    zone = ZoneId.of(args[++i]);
+                    break;
+                default:
+                    root = Paths.get(args[i]);
+            }
+        }
+        if (root == null || !Files.isDirectory(root)) {
+            System.err.println("Usage: TimeTrackerReport <directory> [--threads N] [--zone ZONE]");
+            System.exit(2);
+            return;
+        }
+
+        final Aggregate result = aggregate(root, threads, zone);
+        result.print(System.out);
+    }
+
+    @NotNull
+    static Aggregate aggregate(@NotNull Path root, int threads, @NotNull ZoneId zone) throws IOException {
+        return aggregate(root, threads, zone, CHUNK_BYTES);
+    }
+
+    @NotNull
+    static Aggregate aggregate(@NotNull Path root, int threads, @NotNull ZoneId zone, long chunkBytes) throws IOException {
+        final List<Chunk> chunks = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : files.filter(f -> f.getFileName().toString().endsWith(TimeTrackerJournal.EXTENSION)
+                    && Files.isRegularFile(f)).collect(Collectors.toList())) {
+                final Path relative = root.relativize(file);
+                final String user = relative.getNameCount() > 1 ? relative.getName(0).toString() : NO_USER;
+                final String fileName = file.getFileName().toString();
+                final String project = fileName.substring(0, fileName.length() - TimeTrackerJournal.EXTENSION.length());
+
+                final long size = Files.size(file);
+                for (long from = 0; from < size; from += chunkBytes) {
+                    chunks.add(new Chunk(file, user, project, from, Math.min(size, from + chunkBytes)));
+                }
+            }
+        }
+
+        final ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        try {
+            return pool.invoke(new AggregateTask(chunks, 0, chunks.size(), zone));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static final class Chunk {
+        final Path file;
+        final String user;
+        final String project;
+        final long from;
+        final long to;
+
+        Chunk(Path file, String user, String project, long from, long to) {
+            this.file = file;
+            this.user = user;
+            this.project = project;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    private static final class AggregateTask extends RecursiveTask<Aggregate> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Chunk> chunks;
+        private final int from;
+        private final int to;
+        private final ZoneId zone;
+
+        AggregateTask(List<Chunk> chunks, int from, int to, ZoneId zone) {
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+            this.zone = zone;
+        }
+
+        @Override
+        protected Aggregate compute() {
+            if (to - from <= 1) {
+                final Aggregate result = new Aggregate();
+                if (to > from) {
+                    result.addChunk(chunks.get(from), zone);
+                }
+                return result;
+            }
+            final int middle = (from + to) >>> 1;
+            final AggregateTask left = new AggregateTask(chunks, from, middle, zone);
+            left.fork();
+            final Aggregate right = new AggregateTask(chunks, middle, to, zone).compute();
+            return left.join().mergeFrom(right);
+        }
+    }
+
+    /** Counted milliseconds per user, per project and per day. */
+    static final class Aggregate {
+        final Map<String, Long> perUserMs = new TreeMap<>();
+        final Map<String, Long> perProjectMs = new TreeMap<>();
+        final Map<LocalDate, Long> perDayMs = new TreeMap<>();
+
+        void addChunk(@NotNull Chunk chunk, @NotNull ZoneId zone) {
+            final DaySplitter days = new DaySplitter(zone);
+            try {
+                TimeTrackerJournal.read(chunk.file, chunk.from, chunk.to, days);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            perUserMs.merge(chunk.user, days.totalMs, Long::sum);
+            perProjectMs.merge(chunk.user + "/" + chunk.project, days.totalMs, Long::sum);
+            days.perDayMs.forEach((day, ms) -> perDayMs.merge(day, ms[0], Long::sum));
+        }
+
+        @NotNull
+        Aggregate mergeFrom(@NotNull Aggregate other) {
+            other.perUserMs.forEach((k, v) -> perUserMs.merge(k, v, Long::sum));
+            other.perProjectMs.forEach((k, v) -> perProjectMs.merge(k, v, Long::sum));
+            other.perDayMs.forEach((k, v) -> perDayMs.merge(k, v, Long::sum));
+            return this;
+        }
+
+        void print(@NotNull PrintStream out) {
+            perUserMs.forEach((k, v) -> out.println("user\t" + k + "\t" + msToS(v)));
+            perProjectMs.forEach((k, v) -> out.println("project\t" + k + "\t" + msToS(v)));
+            perDayMs.forEach((k, v) -> out.println("day\t" + k + "\t" + msToS(v)));
+        }
+    }
+
+    /** Sums intervals and splits them at midnight. Remembers the bounds of the last day, which almost always matches. */
+    private static final class DaySplitter implements TimeTrackerJournal.Visitor {
+        private final ZoneId zone;
+        final Map<LocalDate, long[]> perDayMs = new HashMap<>();
+        long totalMs = 0;
+
+        private long dayStartMs = Long.MAX_VALUE;
+        private long dayEndMs = Long.MIN_VALUE;
+        private long[] dayTotal = null;
+
+        DaySplitter(ZoneId zone) {
+            this.zone = zone;
+        }
+
+        @Override
+        public void interval(long startMs, long endMs) {
+            totalMs += endMs - startMs;
+            while (startMs < endMs) {
+                if (startMs < dayStartMs || startMs >= dayEndMs) {
+                    final LocalDate day = Instant.ofEpochMilli(startMs).atZone(zone).toLocalDate();
+                    final ZonedDateTime dayStart = day.atStartOfDay(zone);
+                    dayStartMs = dayStart.toInstant().toEpochMilli();
+                    dayEndMs = day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+                    dayTotal = perDayMs.computeIfAbsent(day, d -> new long[1]);
+                }
+                final long segmentEndMs = Math.min(endMs, dayEndMs);
+                dayTotal[0] += segmentEndMs - startMs;
+                startMs = segmentEndMs;
+            }
+        }
+    }
+
+    /** Same rounding as {@code TimeTrackerComponent.msToS}, which can't be used here without the IDE on the classpath. */
+    private static long msToS(long ms) {
+        return (ms + 500L) / 1000L;
+    }
+}
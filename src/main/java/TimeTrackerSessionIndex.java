@@ -0,0 +1,153 @@
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Inverted index from session tags to session ordinals, for ad-hoc questions like
+ * "time on module X on branch Y in March": {@code sumDurationMs(and(tag("module:X"), tag("branch:Y"), tag("month:2026-03")))}.
+ *
+ * Each tag maps to a {@link TimeTrackerBitmap} of ordinals, durations are kept in a separate column,
+ * so a query is a few bitmap operations followed by a scan over the matching durations.
+ * Every session is also tagged with its {@code day:yyyy-MM-dd} and {@code month:yyyy-MM}.
+ */
+final class TimeTrackerSessionIndex {
+
+    static final String DAY_PREFIX = "day:";
+    static final String MONTH_PREFIX = "month:";
+
+    private final ZoneId zone;
+
+    private long[] startMs = new long[1024];
+    private long[] durationMs = new long[1024];
+    private int size = 0;
+
+    private final Map<String, TimeTrackerBitmap> postings = new HashMap<>();
+
+    private long dayStartMs = Long.MAX_VALUE;
+    private long dayEndMs = Long.MIN_VALUE;
+    private TimeTrackerBitmap dayPostings = null;
+    private TimeTrackerBitmap monthPostings = null;
+
+    TimeTrackerSessionIndex(@NotNull ZoneId zone) {
+        this.zone = zone;
+    }
+
+    /** Add session and return its ordinal. */
+    synchronized int add(long startMs, long endMs, @NotNull Iterable<String> tags) {
+        if (size == this.startMs.length) {
+            this.startMs = Arrays.copyOf(this.startMs, size * 2);
+            this.durationMs = Arrays.copyOf(this.durationMs, size * 2);
+        }
+        final int ordinal = size++;
+        this.startMs[ordinal] = startMs;
+        this.durationMs[ordinal] = Math.max(0L, endMs - startMs);
+
+        if (startMs < dayStartMs || startMs >= dayEndMs) {
+            final LocalDate day = Instant.ofEpochMilli(startMs).atZone(zone).toLocalDate();
+            dayStartMs = day.atStartOfDay(zone).toInstant().toEpochMilli();
+            dayEndMs = day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+            dayPostings = postings(DAY_PREFIX + day);
+            monthPostings = postings(MONTH_PREFIX + day.toString().substring(0, 7));
+        }
+        dayPostings.add(ordinal);
+        monthPostings.add(ordinal);
+
+        for (String tag : tags) {
+            postings(tag).add(ordinal);
+        }
+        return ordinal;
+    }
+
+    @NotNull
+    private TimeTrackerBitmap postings(@NotNull String tag) {
+        return postings.computeIfAbsent(tag, t -> new TimeTrackerBitmap());
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /** Sessions matching the query. A copy, postings keep changing as sessions are added. */
+    @NotNull
+    synchronized TimeTrackerBitmap evaluate(@NotNull Query query) {
+        return query.evaluate(this).copy();
+    }
+
+    /** Total duration of sessions matching the query. */
+    synchronized long sumDurationMs(@NotNull Query query) {
+        final long[] durations = this.durationMs;
+        final long[] sum = {0L};
+        query.evaluate(this).forEach(ordinal -> sum[0] += durations[ordinal]);
+        return sum[0];
+    }
+
+    synchronized long getStartMs(int ordinal) {
+        return startMs[ordinal];
+    }
+
+    /** Boolean combination of tags. */
+    interface Query {
+        @NotNull
+        TimeTrackerBitmap evaluate(@NotNull TimeTrackerSessionIndex index);
+    }
+
+    @NotNull
+    static Query tag(@NotNull String tag) {
+        return index -> {
+            final TimeTrackerBitmap bitmap = index.postings.get(tag);
+            return bitmap == null ? new TimeTrackerBitmap() : bitmap;
+        };
+    }
+
+    @NotNull
+    static Query and(@NotNull Query first, @NotNull Query... rest) {
+        return index -> {
+            TimeTrackerBitmap result = first.evaluate(index);
+            for (Query query : rest) {
+                result = result.and(query.evaluate(index));
+            }
+            return result;
+        };
+    }
+
+    @NotNull
+    static Query or(@NotNull Query first, @NotNull Query... rest) {
+        return index -> {
+            TimeTrackerBitmap result = first.evaluate(index);
+            for (Query query : rest) {
+                result = result.or(query.evaluate(index));
+            }
+            return result;
+        };
+    }
+
+    /** Sessions matching {@code query} but not {@code excluded}. */
+    @NotNull
+    static Query andNot(@NotNull Query query, @NotNull Query excluded) {
+        return index -> query.evaluate(index).andNot(excluded.evaluate(index));
+    }
+
+    /** All sessions not matching the query. */
+    @NotNull
+    static Query not(@NotNull Query query) {
+        return index -> TimeTrackerBitmap.range(index.size).andNot(query.evaluate(index));
+    }
+
+    /** Build index of everything in the journal. */
+    @NotNull
+    static TimeTrackerSessionIndex load(@Nullable TimeTrackerJournal journal, @NotNull ZoneId zone) throws IOException {
+        final TimeTrackerSessionIndex index = new TimeTrackerSessionIndex(zone);
+        if (journal != null && Files.exists(journal.getFile())) {
+            TimeTrackerJournal.readTagged(journal.getFile(), index::add);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,336 @@
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Uploads counted intervals to a time-tracking server, in batches, from a background worker.
+ *
+ * {@link #offer(long, long)} never blocks: sessions go to a bounded queue, from which the worker moves them
+ * into an outbox file before uploading, so nothing is lost when the IDE closes while offline.
+ * Failed uploads are retried with exponential backoff. A batch the server rejects for good (4xx other than
+ * 408 and 429) is retried one session at a time, and the sessions rejected on their own are moved to
+ * a {@link #REJECTED_EXTENSION} file next to the outbox, so one bad session doesn't hold back the rest.
+ *
+ * The worker runs on the executor it is given. Syncs of the same outbox must share a sequential executor,
+ * so a new worker only starts reading the outbox once the previous one has finished writing it. Session IDs are derived from the project and the start
+ * of the session, so the server can drop sessions it already received from a retried batch.
+ *
+ * Request body is {@code {"sessions":[{"id":"...","start":ms,"end":ms},...]}}, any 2xx response acknowledges it.
+ */
+final class TimeTrackerSync implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(TimeTrackerSync.class.getName());
+    private static final boolean DEBUG_SYNC = false;
+
+    static final String OUTBOX_EXTENSION = ".outbox";
+    static final String REJECTED_EXTENSION = ".rejected";
+
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final int BATCH_SIZE = 100;
+    private static final long MIN_BACKOFF_MS = TimeUnit.SECONDS.toMillis(1);
+    private static final long MAX_BACKOFF_MS = TimeUnit.MINUTES.toMillis(5);
+    private static final int TIMEOUT_MS = (int) TimeUnit.SECONDS.toMillis(30);
+    /** How long {@link #close()} waits for the worker to store what is queued. */
+    private static final long CLOSE_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(2);
+
+    private final String projectId;
+    private final URL endpoint;
+    private final Path outbox;
+
+    private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private volatile Thread worker;
+    private volatile boolean closed = false;
+
+    /* Owned by the worker */
+    private final ArrayDeque<String> pending = new ArrayDeque<>();
+    /** Sessions of a rejected batch still to be sent one at a time, or 0. */
+    private int isolating = 0;
+    private long backoffMs = 0;
+    private long nextAttemptMs = 0;
+
+    TimeTrackerSync(@NotNull String projectId, @NotNull URL endpoint, @NotNull Path outbox, @NotNull Executor executor) {
+        this.projectId = projectId.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+        this.endpoint = endpoint;
+        this.outbox = outbox;
+        executor.execute(this::run);
+    }
+
+    /**
+     * Schedule a session for upload. Does not block.
+     * @return false if the queue is full. The worker empties it between uploads, and an upload may keep it
+     * busy for up to twice {@link #TIMEOUT_MS}, so this happens when more than {@link #QUEUE_CAPACITY}
+     * sessions are offered while the server is slow to respond.
+     */
+    boolean offer(long startMs, long endMs) {
+        final boolean accepted = queue.offer(projectId + ":" + startMs + "\t" + startMs + "\t" + endMs);
+        if (!accepted) {
+            LOG.warning("Sync queue is full, session at " + startMs + " will not be uploaded");
+        }
+        return accepted;
+    }
+
+    /**
+     * Stop the worker and wait a while until it has stored whatever is queued in the outbox.
+     * An upload in progress can't be interrupted, the worker then stores the queue once it returns.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        final Thread worker = this.worker;
+        if (worker != null) {
+            worker.interrupt();
+        }
+        try {
+            if (!finished.await(CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                LOG.warning("Sync worker did not stop in time, queued sessions are stored when the upload in progress ends");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        worker = Thread.currentThread();
+        try {
+            work();
+        } finally {
+            worker = null;
+            // Don't leave the pooled thread interrupted
+            Thread.interrupted();
+            finished.countDown();
+        }
+    }
+
+    private void work() {
+        try {
+            final Path parent = outbox.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            if (Files.exists(outbox)) {
+                // Decoding this way replaces broken bytes instead of failing, so a torn line can't lose the rest
+                final String text = new String(Files.readAllBytes(outbox), StandardCharsets.UTF_8);
+                for (String line : text.split("\n")) {
+                    if (isValidSession(line)) {
+                        pending.add(line);
+                    } else if (!line.isEmpty()) {
+                        LOG.warning("Skipping malformed line in sync outbox " + outbox + ": " + line);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Failed to read sync outbox " + outbox, e);
+        }
+
+        final List<String> received = new ArrayList<>();
+        try {
+            while (!closed) {
+                final String session;
+                if (pending.isEmpty()) {
+                    session = queue.take();
+                } else {
+                    session = queue.poll(Math.max(0L, nextAttemptMs - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                }
+
+                if (session != null) {
+                    received.add(session);
+                    queue.drainTo(received);
+                    storeInOutbox(received);
+                }
+
+                if (!pending.isEmpty() && System.currentTimeMillis() >= nextAttemptMs) {
+                    uploadBatch();
+                }
+            }
+        } catch (InterruptedException ignored) {
+            // Closed
+        } finally {
+            // Whatever is still queued must survive until the next start
+            queue.drainTo(received);
+            storeInOutbox(received);
+        }
+    }
+
+    private void storeInOutbox(@NotNull List<String> sessions) {
+        if (sessions.isEmpty()) {
+            return;
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(outbox, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (String session : sessions) {
+                writer.write(session);
+                writer.write('\n');
+            }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Failed to write sync outbox " + outbox + ", sessions are kept in memory only", e);
+        }
+        pending.addAll(sessions);
+        sessions.clear();
+    }
+
+    private void uploadBatch() {
+        final int batchSize = isolating > 0 ? 1 : BATCH_SIZE;
+        final List<String> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+        for (String session : pending) {
+            if (batch.size() >= batchSize) {
+                break;
+            }
+            batch.add(session);
+        }
+
+        final int status = post(batch);
+        final boolean permanent = status / 100 == 4 && status != 408 && status != 429;
+        if (isolating > 0 && (status / 100 == 2 || permanent)) {
+            isolating--;
+        }
+        if (status / 100 == 2) {
+            for (int i = 0; i < batch.size(); i++) {
+                pending.removeFirst();
+            }
+            rewriteOutbox();
+            backoffMs = 0;
+            nextAttemptMs = 0;
+        } else if (permanent) {
+            if (batch.size() > 1) {
+                // Find the sessions the server doesn't want by sending them one by one
+                if (DEBUG_SYNC) LOG.info("Batch rejected with " + status + ", retrying its sessions one at a time");
+                isolating = batch.size();
+            } else {
+                LOG.warning("Time tracking server rejected session " + batch.get(0) + " with " + status + ", moving it to " + REJECTED_EXTENSION);
+                storeRejected(batch.get(0));
+                pending.removeFirst();
+                rewriteOutbox();
+            }
+            backoffMs = 0;
+            nextAttemptMs = 0;
+        } else {
+            backoffMs = Math.min(MAX_BACKOFF_MS, Math.max(MIN_BACKOFF_MS, backoffMs * 2));
+            nextAttemptMs = System.currentTimeMillis() + backoffMs + ThreadLocalRandom.current().nextLong(backoffMs / 2 + 1);
+            if (DEBUG_SYNC) LOG.info("Upload failed with " + status + ", retrying in " + backoffMs + " ms");
+        }
+    }
+
+    private void storeRejected(@NotNull String session) {
+        final Path rejected = outbox.resolveSibling(outbox.getFileName() + REJECTED_EXTENSION);
+        try {
+            Files.write(rejected, (session + "\n").getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Failed to write " + rejected + ", dropping rejected session " + session, e);
+        }
+    }
+
+    /** Replace the outbox with what is still pending. */
+    private void rewriteOutbox() {
+        try {
+            final Path temp = outbox.resolveSibling(outbox.getFileName() + ".tmp");
+            Files.write(temp, pending, StandardCharsets.UTF_8);
+            Files.move(temp, outbox, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Failed to rewrite sync outbox " + outbox, e);
+        }
+    }
+
+    /** @return HTTP status, or -1 when the server could not be reached */
+    private int post(@NotNull List<String> batch) {
+        final byte[] body = toJson(batch).getBytes(StandardCharsets.UTF_8);
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) endpoint.openConnection();
+            connection.setRequestMethod("POST");
+            connection.setConnectTimeout(TIMEOUT_MS);
+            connection.setReadTimeout(TIMEOUT_MS);
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(body.length);
+            connection.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+            return connection.getResponseCode();
+        } catch (IOException e) {
+            if (DEBUG_SYNC) LOG.log(Level.INFO, "Failed to reach " + endpoint, e);
+            return -1;
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    /** Outbox line is {@code id<TAB>startMs<TAB>endMs}. */
+    private static boolean isValidSession(@NotNull String line) {
+        final String[] fields = line.split("\t", -1);
+        if (fields.length != 3 || fields[0].isEmpty()) {
+            return false;
+        }
+        try {
+            return Long.parseLong(fields[2]) >= Long.parseLong(fields[1]);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /** Sessions must have passed {@link #isValidSession(String)}. */
+    @NotNull
+    private static String toJson(@NotNull List<String> batch) {
+        final StringBuilder sb = new StringBuilder(64 + batch.size() * 64);
+        sb.append("{\"sessions\":[");
+        for (int i = 0; i < batch.size(); i++) {
+            final String[] fields = batch.get(i).split("\t");
+            if (i > 0) sb.append(',');
+            sb.append("{\"id\":\"");
+            appendJsonEscaped(sb, fields[0]);
+            sb.append("\",\"start\":").append(fields[1]);
+            sb.append(",\"end\":").append(fields[2]).append('}');
+        }
+        return sb.append("]}").toString();
+    }
+
+    private static void appendJsonEscaped(@NotNull StringBuilder sb, @NotNull String value) {
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+    }
+
+    /** @return parsed endpoint, or null if sync is disabled or the URL is not valid */
+    @Nullable
+    static URL parseEndpoint(@Nullable String endpoint) {
+        if (endpoint == null || endpoint.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return new URL(endpoint.trim());
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Invalid sync endpoint: " + endpoint);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.extensions.ExtensionPointName;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Tells the tracker what the user is working on: the task counted time is attributed to, and tags for the
+ * {@link TimeTrackerSessionIndex}.
+ * Implementations are registered by optional dependencies (see {@code time-tracker-vcs.xml}),
+ * so the tracker itself loads in IDEs without them.
+ */
+public interface TimeTrackerTaskSource {
+
+    ExtensionPointName<TimeTrackerTaskSource> EP_NAME = ExtensionPointName.create("Tracker.TimeTracker.taskSource");
+
+    /**
+     * Start following the task of given project, reporting changes to the tracker until parent is disposed.
+     * @return the current task, or null if there is none
+     */
+    @Nullable
+    String follow(@NotNull Project project, @NotNull TimeTrackerComponent tracker, @NotNull Disposable parent);
+
+    /** Add tags of the time counted while given file is being edited, like the branch it is on. Called on EDT. */
+    default void addSessionTags(@NotNull Project project, @NotNull VirtualFile file, @NotNull List<String> tags) {
+    }
+}
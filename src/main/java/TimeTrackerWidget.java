@@ -1,11 +1,11 @@
 import com.intellij.ide.ui.UISettings;
-import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.ui.popup.ComponentPopupBuilder;
 import com.intellij.openapi.ui.popup.JBPopup;
 import com.intellij.openapi.ui.popup.JBPopupFactory;
 import com.intellij.openapi.wm.CustomStatusBarWidget;
 import com.intellij.openapi.wm.StatusBar;
 import com.intellij.openapi.wm.StatusBarWidget;
+import com.intellij.openapi.wm.WindowManager;
 import com.intellij.ui.JBColor;
 import com.intellij.ui.awt.RelativePoint;
 import com.intellij.util.ui.JBUI;
@@ -18,6 +18,8 @@ import java.awt.*;
 import java.awt.event.AWTEventListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 
 /**
  *
@@ -28,6 +30,26 @@ public final class TimeTrackerWidget extends JButton implements CustomStatusBarW
 
     private final TimeTrackerComponent component;
 
+    /** Built on first use and reused, see {@link TimeTrackerPopupContent#refresh()}. */
+    @Nullable
+    private TimeTrackerPopupContent popupContent;
+
+    /** Input is only listened to while this is true, so trackers in background windows don't see events at all. */
+    private volatile boolean frameFocused = false;
+    @Nullable
+    private Window frame;
+    private final WindowAdapter frameActivationListener = new WindowAdapter() {
+        @Override
+        public void windowActivated(WindowEvent e) {
+            setFrameFocused(true);
+        }
+
+        @Override
+        public void windowDeactivated(WindowEvent e) {
+            setFrameFocused(false);
+        }
+    };
+
     TimeTrackerWidget(TimeTrackerComponent component) {
         this.component = component;
         addActionListener(e -> component.toggleRunning());
@@ -39,7 +61,12 @@ public final class TimeTrackerWidget extends JButton implements CustomStatusBarW
             @Override
             public void mouseClicked(MouseEvent e) {
                 if (e.getButton() == MouseEvent.BUTTON3) {
-                    final TimeTrackerPopupContent content = new TimeTrackerPopupContent(component);
+                    TimeTrackerPopupContent content = popupContent;
+                    if (content == null) {
+                        popupContent = content = new TimeTrackerPopupContent(component, TimeTrackerWidget.this);
+                    } else {
+                        content.refresh();
+                    }
 
                     final ComponentPopupBuilder popupBuilder = JBPopupFactory.getInstance().createComponentPopupBuilder(content, null);
                     popupBuilder.setCancelOnClickOutside(true);
@@ -77,18 +104,52 @@ public final class TimeTrackerWidget extends JButton implements CustomStatusBarW
 
     @Override
     public void install(@NotNull StatusBar statusBar) {
-        Toolkit.getDefaultToolkit().addAWTEventListener(this,
-                AWTEvent.KEY_EVENT_MASK |
-                        AWTEvent.MOUSE_EVENT_MASK |
-                        AWTEvent.MOUSE_WHEEL_EVENT_MASK |
-                        AWTEvent.MOUSE_MOTION_EVENT_MASK
-        );
+        component.attachWidget(this);
+        final Window frame = statusBar.getProject() == null ? null : WindowManager.getInstance().getFrame(statusBar.getProject());
+        if (frame != null) {
+            this.frame = frame;
+            frame.addWindowListener(frameActivationListener);
+            final boolean active = frame.isActive();
+            setFrameFocused(active);
+            if (!active) {
+                // Already unfocused as far as the flag goes, but the tracker must still learn it
+                component.notifyFrameFocusChanged(false);
+            }
+        } else {
+            // Nothing to follow, listen all the time
+            setFrameFocused(true);
+        }
     }
 
+    /** Called on EDT when the IDE frame of this widget gains or loses focus. */
+    private void setFrameFocused(boolean focused) {
+        if (frameFocused == focused) {
+            return;
+        }
+        frameFocused = focused;
+        if (focused) {
+            Toolkit.getDefaultToolkit().addAWTEventListener(this,
+                    AWTEvent.KEY_EVENT_MASK |
+                            AWTEvent.MOUSE_EVENT_MASK |
+                            AWTEvent.MOUSE_WHEEL_EVENT_MASK |
+                            AWTEvent.MOUSE_MOTION_EVENT_MASK
+            );
+        } else {
+            Toolkit.getDefaultToolkit().removeAWTEventListener(this);
+        }
+        component.notifyFrameFocusChanged(focused);
+    }
 
     @Override
     public void dispose() {
+        final Window frame = this.frame;
+        if (frame != null) {
+            frame.removeWindowListener(frameActivationListener);
+            this.frame = null;
+        }
+        frameFocused = false;
         Toolkit.getDefaultToolkit().removeAWTEventListener(this);
+        component.detachWidget(this);
     }
 
     private static final Color COLOR_OFF = new JBColor(new Color(189, 0, 16), new Color(128, 0, 0));
@@ -192,12 +253,10 @@ public final class TimeTrackerWidget extends JButton implements CustomStatusBarW
         return getPreferredSize();
     }
 
+    /** Only installed while our IDE frame is focused, see {@link #setFrameFocused(boolean)}. */
     @Override
     public void eventDispatched(AWTEvent event) {
-        final Component ultimateParent = UIUtil.findUltimateParent(this);
-        final Window activeWindow = KeyboardFocusManager.getCurrentKeyboardFocusManager().getActiveWindow();
-        // Un-idle this only if our ide window is active
-        if (ApplicationManager.getApplication().isActive() && ultimateParent == activeWindow) {
+        if (frameFocused) {
             component.notifyUserNotIdle();
         }
     }
@@ -0,0 +1,73 @@
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.wm.StatusBar;
+import com.intellij.openapi.wm.StatusBarWidget;
+import com.intellij.openapi.wm.StatusBarWidgetFactory;
+import org.jetbrains.annotations.Nls;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Creates the {@link TimeTrackerWidget} when the status bar asks for it.
+ * This is the first thing that touches {@link TimeTrackerComponent}, so the service is created lazily here.
+ */
+public final class TimeTrackerWidgetFactory implements StatusBarWidgetFactory {
+
+    private static final Logger LOG = Logger.getLogger(TimeTrackerWidgetFactory.class.getName());
+    /**
+     * Logs how long creating the tracker service and its widget takes.
+     * Enabled with {@code -Dtimetracker.debug.startup=true} so it can be switched on in a release build.
+     */
+    private static final boolean DEBUG_STARTUP_TIME = Boolean.getBoolean("timetracker.debug.startup");
+
+    @NotNull
+    @Override
+    public String getId() {
+        return TimeTrackerWidget.ID;
+    }
+
+    @Nls
+    @NotNull
+    @Override
+    public String getDisplayName() {
+        return "Time Tracker";
+    }
+
+    @Override
+    public boolean isAvailable(@NotNull Project project) {
+        return true;
+    }
+
+    @NotNull
+    @Override
+    public StatusBarWidget createWidget(@NotNull Project project) {
+        if (!DEBUG_STARTUP_TIME) {
+            return new TimeTrackerWidget(TimeTrackerComponent.getInstance(project));
+        }
+
+        // The service is usually created right here, so its constructor and loadState() are timed separately from the widget
+        final boolean serviceExisted = project.getServiceIfCreated(TimeTrackerComponent.class) != null;
+        final long startNs = System.nanoTime();
+        final TimeTrackerComponent component = TimeTrackerComponent.getInstance(project);
+        final long serviceNs = System.nanoTime();
+        final TimeTrackerWidget widget = new TimeTrackerWidget(component);
+        final long widgetNs = System.nanoTime();
+        LOG.log(Level.INFO, "createWidget("+project.getName()+"): service "
+                +(serviceExisted ? "already existed" : "created in "+TimeUnit.NANOSECONDS.toMicros(serviceNs - startNs)+" us")
+                +", widget created in "+TimeUnit.NANOSECONDS.toMicros(widgetNs - serviceNs)+" us");
+        return widget;
+    }
+
+    @Override
+    public void disposeWidget(@NotNull StatusBarWidget widget) {
+        Disposer.dispose(widget);
+    }
+
+    @Override
+    public boolean canBeEnabledOn(@NotNull StatusBar statusBar) {
+        return true;
+    }
+}
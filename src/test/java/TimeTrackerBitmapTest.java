@@ -0,0 +1,120 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares {@link TimeTrackerBitmap} with a {@link TreeSet} on random sets mixing sparse and dense containers.
+ */
+public class TimeTrackerBitmapTest {
+
+    private static final int RUNS = 100;
+
+    @Test
+    public void setOperationsMatchTreeSet() {
+        for (int run = 0; run < RUNS; run++) {
+            final Random random = new Random(run);
+            final TreeSet<Integer> a = randomSet(random);
+            final TreeSet<Integer> b = randomSet(random);
+            final TimeTrackerBitmap x = bitmap(a, random);
+            final TimeTrackerBitmap y = bitmap(b, random);
+            final String name = "seed " + run;
+
+            assertEquals(name, new ArrayList<>(a), values(x));
+            assertEquals(name, a.size(), x.cardinality());
+
+            final TreeSet<Integer> and = new TreeSet<>(a);
+            and.retainAll(b);
+            assertEquals(name + " and", new ArrayList<>(and), values(x.and(y)));
+
+            final TreeSet<Integer> or = new TreeSet<>(a);
+            or.addAll(b);
+            assertEquals(name + " or", new ArrayList<>(or), values(x.or(y)));
+            assertEquals(name + " or", or.size(), x.or(y).cardinality());
+
+            final TreeSet<Integer> andNot = new TreeSet<>(a);
+            andNot.removeAll(b);
+            assertEquals(name + " andNot", new ArrayList<>(andNot), values(x.andNot(y)));
+
+            // Operations must not change their inputs
+            assertEquals(name, new ArrayList<>(a), values(x));
+            assertEquals(name, new ArrayList<>(b), values(y));
+        }
+    }
+
+    @Test
+    public void rangeMatchesTreeSet() {
+        final Random random = new Random(1);
+        for (int size : new int[]{0, 1, 63, 64, 65, 4096, 65535, 65536, 65537, 200_000}) {
+            final TreeSet<Integer> expected = new TreeSet<>();
+            for (int i = 0; i < size; i++) {
+                expected.add(i);
+            }
+            assertEquals("range " + size, new ArrayList<>(expected), values(TimeTrackerBitmap.range(size)));
+
+            final TreeSet<Integer> excluded = randomSet(random);
+            final TreeSet<Integer> not = new TreeSet<>(expected);
+            not.removeAll(excluded);
+            assertEquals("not " + size, new ArrayList<>(not), values(TimeTrackerBitmap.range(size).andNot(bitmap(excluded, random))));
+        }
+    }
+
+    @Test
+    public void copyIsIndependent() {
+        final TimeTrackerBitmap bitmap = new TimeTrackerBitmap();
+        bitmap.add(1);
+        bitmap.add(70_000);
+        final TimeTrackerBitmap copy = bitmap.copy();
+        bitmap.add(2);
+        bitmap.add(70_001);
+        assertEquals(4, bitmap.cardinality());
+        assertEquals(2, copy.cardinality());
+    }
+
+    /** Values in a few containers, each of them empty, sparse, dense or full. */
+    private static TreeSet<Integer> randomSet(Random random) {
+        final TreeSet<Integer> set = new TreeSet<>();
+        final int containers = random.nextInt(4);
+        for (int c = 0; c < containers; c++) {
+            final int high = random.nextInt(4) << 16;
+            final int kind = random.nextInt(4);
+            final int count = kind == 0 ? random.nextInt(50) : kind == 1 ? random.nextInt(5000) : kind == 2 ? 3000 + random.nextInt(30_000) : 65536;
+            if (kind == 3) {
+                for (int low = 0; low < count; low++) {
+                    set.add(high | low);
+                }
+            } else {
+                final int spread = random.nextBoolean() ? 1 << 16 : 6000;
+                for (int i = 0; i < count; i++) {
+                    set.add(high | random.nextInt(spread));
+                }
+            }
+        }
+        return set;
+    }
+
+    /** Added either in ascending order, like session ordinals, or shuffled and with a duplicate. */
+    private static TimeTrackerBitmap bitmap(TreeSet<Integer> set, Random random) {
+        final List<Integer> values = new ArrayList<>(set);
+        if (random.nextBoolean() && !values.isEmpty()) {
+            Collections.shuffle(values, random);
+            values.add(values.get(0));
+        }
+        final TimeTrackerBitmap bitmap = new TimeTrackerBitmap();
+        for (int value : values) {
+            bitmap.add(value);
+        }
+        return bitmap;
+    }
+
+    private static List<Integer> values(TimeTrackerBitmap bitmap) {
+        final List<Integer> values = new ArrayList<>();
+        bitmap.forEach(values::add);
+        return values;
+    }
+}
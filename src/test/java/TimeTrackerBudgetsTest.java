@@ -0,0 +1,138 @@
+import org.junit.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class TimeTrackerBudgetsTest {
+
+    private static final ZoneId ZONE = ZoneId.of("UTC");
+    private static final long MINUTE = 60_000L;
+    private static final long HOUR = 60 * MINUTE;
+
+    /** Monday 2026-10-19 plus given days, hours and minutes. */
+    private static long at(int day, int hour, int minute) {
+        return LocalDate.of(2026, 10, 19).plusDays(day).atStartOfDay(ZONE).toInstant().toEpochMilli()
+                + hour * HOUR + minute * MINUTE;
+    }
+
+    private static TimeTrackerBudgets budgets(String rules) {
+        final TimeTrackerBudgets budgets = new TimeTrackerBudgets(ZONE, DayOfWeek.MONDAY);
+        budgets.setRules(rules);
+        return budgets;
+    }
+
+    private static List<String> fire(TimeTrackerBudgets budgets) {
+        final List<String> crossed = new ArrayList<>();
+        budgets.fireCrossed(rule -> crossed.add(rule.period + (rule.goal ? ">" : "<") + rule.thresholdMs / MINUTE));
+        return crossed;
+    }
+
+    @Test
+    public void rulesFireOnceWhenCrossed() {
+        final TimeTrackerBudgets budgets = budgets("day>1h, week<2h, bogus");
+        budgets.count(at(0, 9, 0), at(0, 9, 30));
+        assertEquals(0, fire(budgets).size());
+
+        budgets.count(at(0, 10, 0), at(0, 10, 31));
+        assertEquals("[DAY>60]", fire(budgets).toString());
+        assertEquals(0, fire(budgets).size());
+
+        budgets.count(at(0, 11, 0), at(0, 12, 0));
+        assertEquals("[WEEK<120]", fire(budgets).toString());
+    }
+
+    @Test
+    public void rescheduleFindsEarliestCrossing() {
+        final TimeTrackerBudgets budgets = budgets("day<2h, week>3h");
+        budgets.count(at(0, 9, 0), at(0, 10, 0));
+
+        budgets.reschedule(at(0, 11, 0), -1);
+        assertEquals(Long.MAX_VALUE, budgets.getNextDeadlineMs());
+
+        budgets.reschedule(at(0, 11, 0), at(0, 11, 0));
+        assertEquals(at(0, 12, 0), budgets.getNextDeadlineMs());
+
+        // Time already running counts towards the deadline
+        budgets.reschedule(at(0, 11, 0), at(0, 10, 50));
+        assertEquals(at(0, 11, 50), budgets.getNextDeadlineMs());
+
+        // Rolling over is a deadline too
+        budgets.count(at(0, 11, 0), at(0, 12, 30));
+        fire(budgets);
+        budgets.reschedule(at(0, 23, 0), at(0, 23, 0));
+        assertEquals(at(0, 23, 30), budgets.getNextDeadlineMs());
+        budgets.count(at(0, 23, 0), at(0, 23, 30));
+        fire(budgets);
+        budgets.reschedule(at(0, 23, 30), at(0, 23, 30));
+        assertEquals(at(1, 0, 0), budgets.getNextDeadlineMs());
+    }
+
+    @Test
+    public void rescheduleDoesNotCountRunningTimeOfPreviousDayIntoToday() {
+        final TimeTrackerBudgets budgets = budgets("day<1h");
+        budgets.count(at(1, 0, 0), at(1, 0, 10));
+
+        budgets.reschedule(at(1, 0, 40), at(0, 23, 0));
+        assertEquals(at(1, 0, 50), budgets.getNextDeadlineMs());
+        assertEquals(at(1, 0, 0), budgets.getDayStartMs());
+    }
+
+    @Test
+    public void countingRollsOverAtMidnight() {
+        final TimeTrackerBudgets budgets = budgets("day>1h, week>90m");
+        budgets.count(at(0, 22, 0), at(0, 23, 30));
+        assertEquals("[DAY>60, WEEK>90]", fire(budgets).toString());
+
+        budgets.count(at(0, 23, 30), at(1, 0, 20));
+        assertEquals(at(1, 0, 0), budgets.getDayStartMs());
+        assertEquals(20 * MINUTE, budgets.getDayCountedMs());
+        assertEquals(2 * HOUR + 20 * MINUTE, budgets.getWeekCountedMs());
+        // Daily rules start over, weekly ones don't
+        assertEquals(0, fire(budgets).size());
+        budgets.count(at(1, 1, 0), at(1, 2, 0));
+        assertEquals("[DAY>60]", fire(budgets).toString());
+
+        budgets.count(at(7, 8, 0), at(7, 9, 40));
+        assertEquals(at(7, 0, 0), budgets.getWeekStartMs());
+        assertEquals(100 * MINUTE, budgets.getWeekCountedMs());
+        assertEquals("[DAY>60, WEEK>90]", fire(budgets).toString());
+    }
+
+    @Test
+    public void lateIntervalsDoNotRollBack() {
+        final TimeTrackerBudgets budgets = budgets("day>1h");
+        budgets.count(at(1, 9, 0), at(1, 11, 0));
+        assertEquals("[DAY>60]", fire(budgets).toString());
+
+        // Counted in late, from before midnight: belongs to the week, but not to today
+        budgets.count(at(0, 23, 0), at(1, 0, 15));
+        assertEquals(at(1, 0, 0), budgets.getDayStartMs());
+        assertEquals(2 * HOUR + 15 * MINUTE, budgets.getDayCountedMs());
+        assertEquals(3 * HOUR + 15 * MINUTE, budgets.getWeekCountedMs());
+        assertEquals(0, fire(budgets).size());
+
+        // From the previous week: dropped entirely
+        budgets.count(at(-1, 10, 0), at(-1, 11, 0));
+        assertEquals(at(0, 0, 0), budgets.getWeekStartMs());
+        assertEquals(2 * HOUR + 15 * MINUTE, budgets.getDayCountedMs());
+        assertEquals(3 * HOUR + 15 * MINUTE, budgets.getWeekCountedMs());
+    }
+
+    @Test
+    public void restoreKeepsOnlyCurrentPeriods() {
+        final TimeTrackerBudgets budgets = budgets("day>1h, week>2h");
+        budgets.restore(at(1, 8, 0), at(0, 0, 0), 3 * HOUR, at(0, 0, 0), 5 * HOUR);
+        assertEquals(0, budgets.getDayCountedMs());
+        assertEquals(5 * HOUR, budgets.getWeekCountedMs());
+        // Already crossed when saved, not reported again
+        budgets.count(at(1, 8, 0), at(1, 8, 30));
+        assertEquals(0, fire(budgets).size());
+        budgets.count(at(1, 9, 0), at(1, 9, 30));
+        assertEquals("[DAY>60]", fire(budgets).toString());
+    }
+}
@@ -0,0 +1,96 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+/**
+ * Replays a simulated event stream through {@link TimeTrackerDimensions} and reports the time and the memory
+ * allocated per event.
+ *
+ * The stream is mostly input a few hundred milliseconds apart, with pauses long enough to switch to reading,
+ * focus changes, away periods and total reads mixed in. It is generated up front and replayed shifted in time,
+ * so generating it is not measured.
+ *
+ * Usage: {@code java TimeTrackerDimensionsBenchmark [events]}
+ */
+public final class TimeTrackerDimensionsBenchmark {
+
+    private static final int STREAM_LENGTH = 1 << 20;
+    private static final int WARMUP_PASSES = 20;
+    /** Marks a stream entry which reads totals instead of firing an event. */
+    private static final int READ_TOTALS = -1;
+    private static final TimeTrackerDimensions.Event[] EVENTS = TimeTrackerDimensions.Event.values();
+    private static final TimeTrackerDimensions.Dimension[] DIMENSIONS = TimeTrackerDimensions.Dimension.values();
+
+    public static void main(String[] args) {
+        final long events = args.length > 0 ? Long.parseLong(args[0]) : 50_000_000L;
+
+        final int[] stream = new int[STREAM_LENGTH];
+        final long[] timesMs = new long[STREAM_LENGTH];
+        final Random random = new Random(42);
+        long timeMs = 0;
+        boolean away = false;
+        boolean focused = true;
+        for (int i = 0; i < STREAM_LENGTH; i++) {
+            final int dice = random.nextInt(1000);
+            if (dice < 5) {
+                stream[i] = (focused ? TimeTrackerDimensions.Event.FOCUS_LOST : TimeTrackerDimensions.Event.FOCUS_GAINED).ordinal();
+                focused = !focused;
+            } else if (dice < 6) {
+                stream[i] = (away ? TimeTrackerDimensions.Event.AWAY_ENDED : TimeTrackerDimensions.Event.AWAY_STARTED).ordinal();
+                away = !away;
+            } else if (dice < 16) {
+                stream[i] = READ_TOTALS;
+            } else {
+                stream[i] = TimeTrackerDimensions.Event.INPUT.ordinal();
+            }
+            timeMs += dice < 50 ? 5_000 + random.nextInt(60_000) : 20 + random.nextInt(500);
+            timesMs[i] = timeMs;
+        }
+        final long passMs = timeMs;
+
+        final TimeTrackerDimensions dimensions = new TimeTrackerDimensions(0L);
+        long sink = 0;
+        long offsetMs = 0;
+        for (int pass = 0; pass < WARMUP_PASSES; pass++, offsetMs += passMs) {
+            sink += replay(dimensions, stream, timesMs, offsetMs, STREAM_LENGTH);
+        }
+
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        final com.sun.management.ThreadMXBean allocations = threads instanceof com.sun.management.ThreadMXBean
+                ? (com.sun.management.ThreadMXBean) threads : null;
+        final long threadId = Thread.currentThread().getId();
+        final long allocatedBefore = allocations != null ? allocations.getThreadAllocatedBytes(threadId) : -1;
+        final long startNs = System.nanoTime();
+        long remaining = events;
+        while (remaining > 0) {
+            final int length = (int) Math.min(remaining, STREAM_LENGTH);
+            sink += replay(dimensions, stream, timesMs, offsetMs, length);
+            offsetMs += passMs;
+            remaining -= length;
+        }
+        final long tookNs = System.nanoTime() - startNs;
+        final long allocatedAfter = allocations != null ? allocations.getThreadAllocatedBytes(threadId) : -1;
+
+        System.out.printf("Events\t%d%n", events);
+        System.out.printf("ns/event\t%.2f%n", (double) tookNs / events);
+        if (allocations != null) {
+            System.out.printf("Bytes allocated\t%d%n", allocatedAfter - allocatedBefore);
+        }
+        System.out.println("Checksum\t" + sink);
+    }
+
+    private static long replay(TimeTrackerDimensions dimensions, int[] stream, long[] timesMs, long offsetMs, int length) {
+        long sink = 0;
+        for (int i = 0; i < length; i++) {
+            final long now = offsetMs + timesMs[i];
+            if (stream[i] == READ_TOTALS) {
+                for (TimeTrackerDimensions.Dimension dimension : DIMENSIONS) {
+                    sink += dimensions.getTotalMs(dimension, now);
+                }
+            } else {
+                dimensions.fire(EVENTS[stream[i]], now);
+            }
+        }
+        return sink;
+    }
+}
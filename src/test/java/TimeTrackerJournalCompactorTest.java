@@ -0,0 +1,109 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compacts journals with two days of raw intervals and a week of hourly rollups, as of noon of 2026-10-19.
+ */
+public class TimeTrackerJournalCompactorTest {
+
+    private static final ZoneId ZONE = ZoneId.of("UTC");
+    private static final long MINUTE = 60_000L;
+    private static final long HOUR = 60 * MINUTE;
+
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("compactor-test", TimeTrackerJournal.EXTENSION);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /** Given day of October 2026, hours and minutes. */
+    private static long at(int day, int hour, int minute) {
+        return LocalDate.of(2026, 10, day).atStartOfDay(ZONE).toInstant().toEpochMilli() + hour * HOUR + minute * MINUTE;
+    }
+
+    private static String line(long startMs, long endMs, String... tags) {
+        final StringBuilder line = new StringBuilder().append(startMs).append('\t').append(endMs);
+        for (String tag : tags) {
+            line.append('\t').append(tag);
+        }
+        return line.toString();
+    }
+
+    private boolean compact(String... lines) throws IOException, InterruptedException {
+        Files.write(file, (String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8));
+        return new TimeTrackerJournalCompactor(ZONE, at(19, 12, 0), 2, 7).compact(new TimeTrackerJournal(file));
+    }
+
+    private List<String> lines() throws IOException {
+        return Files.readAllLines(file, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void oldIntervalsAreRolledUpPerTagSet() throws IOException, InterruptedException {
+        assertTrue(compact(
+                line(at(15, 10, 0), at(15, 10, 20), "module:a"),
+                line(at(15, 10, 30), at(15, 11, 10), "module:b", "branch:x"),
+                line(at(15, 11, 30), at(15, 11, 40), "module:a"),
+                line(at(5, 9, 0), at(5, 10, 0)),
+                line(at(18, 9, 0), at(18, 9, 5), "module:a")));
+
+        assertEquals(Arrays.asList(
+                line(at(15, 10, 0), at(15, 10, 20), TimeTrackerJournalCompactor.HOURLY_TAG, "module:a"),
+                line(at(15, 10, 20), at(15, 10, 50), TimeTrackerJournalCompactor.HOURLY_TAG, "module:b", "branch:x"),
+                line(at(15, 11, 0), at(15, 11, 10), TimeTrackerJournalCompactor.HOURLY_TAG, "module:b", "branch:x"),
+                line(at(15, 11, 10), at(15, 11, 20), TimeTrackerJournalCompactor.HOURLY_TAG, "module:a"),
+                line(at(5, 0, 0), at(5, 1, 0), TimeTrackerJournalCompactor.DAILY_TAG),
+                line(at(18, 9, 0), at(18, 9, 5), "module:a")), lines());
+
+        // Compacted already
+        assertFalse(compact(lines().toArray(new String[0])));
+    }
+
+    @Test
+    public void recentRollupsPassThroughAndOldHourlyOnesBecomeDaily() throws IOException, InterruptedException {
+        final String kept = line(at(15, 10, 0), at(15, 10, 20), TimeTrackerJournalCompactor.HOURLY_TAG, "module:a");
+        assertTrue(compact(
+                line(at(10, 8, 0), at(10, 8, 30), TimeTrackerJournalCompactor.HOURLY_TAG, "module:a"),
+                line(at(10, 9, 0), at(10, 9, 15), TimeTrackerJournalCompactor.HOURLY_TAG, "module:a"),
+                kept));
+
+        assertEquals(Arrays.asList(
+                line(at(10, 0, 0), at(10, 0, 45), TimeTrackerJournalCompactor.DAILY_TAG, "module:a"),
+                kept), lines());
+    }
+
+    @Test
+    public void lateIntervalIsLaidAfterRollupsOfItsBucket() throws IOException, InterruptedException {
+        final String kept = line(at(15, 10, 0), at(15, 10, 20), TimeTrackerJournalCompactor.HOURLY_TAG, "module:a");
+        final String late = line(at(15, 10, 30), at(15, 10, 45), "module:b");
+        final String recent = line(at(18, 9, 0), at(18, 9, 5));
+        final String rolledUp = line(at(15, 10, 20), at(15, 10, 35), TimeTrackerJournalCompactor.HOURLY_TAG, "module:b");
+
+        assertTrue(compact(kept, recent, late));
+        assertEquals(Arrays.asList(kept, recent, rolledUp), lines());
+
+        // The rollup may also come after the late interval
+        assertTrue(compact(late, kept, recent));
+        assertEquals(Arrays.asList(rolledUp, kept, recent), lines());
+    }
+}
@@ -0,0 +1,220 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks {@link TimeTrackerJournalMerger#merge} against a brute-force union of randomly generated journals,
+ * some of them with intervals recorded late.
+ */
+public class TimeTrackerJournalMergerTest {
+
+    private static final int RUNS = 500;
+    private static final int DOMAIN_MS = 2000;
+    private static final String[] TAGS = {"a", "b", "c", TimeTrackerJournalCompactor.HOURLY_TAG};
+
+    private Path dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("merger-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    public void mergeEqualsBruteForceUnion() throws IOException {
+        for (int run = 0; run < RUNS; run++) {
+            final Random random = new Random(run);
+            final List<List<Interval>> journals = new ArrayList<>();
+            final int journalCount = 1 + random.nextInt(4);
+            for (int j = 0; j < journalCount; j++) {
+                journals.add(randomJournal(random));
+            }
+            check("seed " + run, journals);
+        }
+    }
+
+    @Test
+    public void recordsLaterThanWindowAreStillCounted() throws IOException {
+        for (int run = 0; run < RUNS; run++) {
+            final Random random = new Random(run);
+            final List<Path> files = new ArrayList<>();
+            final boolean[] expected = new boolean[DOMAIN_MS];
+            final int journalCount = 1 + random.nextInt(3);
+            for (int j = 0; j < journalCount; j++) {
+                final List<Interval> journal = randomJournal(random);
+                for (Interval interval : journal) {
+                    Arrays.fill(expected, (int) interval.startMs, (int) interval.endMs, true);
+                }
+                files.add(write(journal));
+            }
+
+            final boolean[] actual = new boolean[DOMAIN_MS];
+            final long[] summedMs = {0};
+            final long totalMs = TimeTrackerJournalMerger.merge(files, 1 + random.nextInt(3), (startMs, endMs, tags) -> {
+                Arrays.fill(actual, (int) startMs, (int) endMs, true);
+                summedMs[0] += endMs - startMs;
+            });
+            final String name = "seed " + run;
+            assertTrue(name, Arrays.equals(expected, actual));
+            assertEquals(name, summedMs[0], totalMs);
+        }
+    }
+
+    @Test
+    public void lateIntervalIsMergedInOrder() throws IOException {
+        check("late", Collections.singletonList(Arrays.asList(
+                new Interval(100, 200, "a"),
+                new Interval(500, 600, "b"),
+                new Interval(200, 500, "c"),
+                new Interval(900, 950))));
+    }
+
+    @Test
+    public void malformedLinesAreSkipped() throws IOException {
+        final Path journal = dir.resolve("malformed.journal");
+        Files.write(journal, "10\t20\tx\ngarbage\n30\n40\t35\n50\t60\n".getBytes(StandardCharsets.UTF_8));
+        final List<Interval> merged = new ArrayList<>();
+        final long totalMs = TimeTrackerJournalMerger.merge(Collections.singletonList(journal),
+                (startMs, endMs, tags) -> merged.add(new Interval(startMs, endMs, tags.toArray(new String[0]))));
+        assertEquals(20, totalMs);
+        assertEquals(Arrays.asList(new Interval(10, 20, "x"), new Interval(50, 60)), merged);
+    }
+
+    private void check(String name, List<List<Interval>> journals) throws IOException {
+        final List<Path> files = new ArrayList<>();
+        for (List<Interval> journal : journals) {
+            files.add(write(journal));
+        }
+
+        final List<Interval> merged = new ArrayList<>();
+        final long totalMs = TimeTrackerJournalMerger.merge(files,
+                (startMs, endMs, tags) -> merged.add(new Interval(startMs, endMs, tags.toArray(new String[0]))));
+
+        final boolean[] expected = new boolean[DOMAIN_MS];
+        for (List<Interval> journal : journals) {
+            for (Interval interval : journal) {
+                Arrays.fill(expected, (int) interval.startMs, (int) interval.endMs, true);
+            }
+        }
+        final boolean[] actual = new boolean[DOMAIN_MS];
+        long previousEndMs = Long.MIN_VALUE;
+        long summedMs = 0;
+        for (Interval interval : merged) {
+            assertTrue(name + ": " + merged, interval.startMs > previousEndMs);
+            assertTrue(name + ": " + merged, interval.endMs >= interval.startMs);
+            previousEndMs = interval.endMs;
+            summedMs += interval.endMs - interval.startMs;
+            Arrays.fill(actual, (int) interval.startMs, (int) interval.endMs, true);
+
+            final Set<String> expectedTags = new HashSet<>();
+            for (List<Interval> journal : journals) {
+                for (Interval input : journal) {
+                    if (input.startMs <= interval.endMs && input.endMs >= interval.startMs) {
+                        expectedTags.addAll(input.tags);
+                    }
+                }
+            }
+            assertEquals(name + ": tags of " + interval, expectedTags, new HashSet<>(interval.tags));
+            if (interval.tags.contains(TimeTrackerJournalCompactor.HOURLY_TAG)) {
+                assertEquals(name + ": " + interval, TimeTrackerJournalCompactor.HOURLY_TAG, interval.tags.get(0));
+            }
+        }
+        assertTrue(name, Arrays.equals(expected, actual));
+        assertEquals(name, summedMs, totalMs);
+    }
+
+    /** Mostly ordered intervals, with a few moved later as if they had been counted in after the fact. */
+    private static List<Interval> randomJournal(Random random) {
+        final List<Interval> journal = new ArrayList<>();
+        final int count = random.nextInt(40);
+        for (int i = 0; i < count; i++) {
+            final long startMs = random.nextInt(DOMAIN_MS);
+            final long endMs = Math.min(DOMAIN_MS, startMs + random.nextInt(150));
+            final List<String> tags = new ArrayList<>();
+            for (String tag : TAGS) {
+                if (random.nextInt(4) == 0) {
+                    tags.add(tag);
+                }
+            }
+            journal.add(new Interval(startMs, endMs, tags.toArray(new String[0])));
+        }
+        journal.sort((a, b) -> Long.compare(a.startMs, b.startMs));
+        for (int i = 0; i + 1 < journal.size(); i++) {
+            if (random.nextInt(8) == 0) {
+                final Interval late = journal.remove(i);
+                journal.add(i + 1 + random.nextInt(journal.size() - i), late);
+            }
+        }
+        return journal;
+    }
+
+    private Path write(List<Interval> journal) throws IOException {
+        final StringBuilder text = new StringBuilder();
+        for (Interval interval : journal) {
+            text.append(interval.startMs).append('\t').append(interval.endMs);
+            for (String tag : interval.tags) {
+                text.append('\t').append(tag);
+            }
+            text.append('\n');
+        }
+        final Path file = Files.createTempFile(dir, "input", TimeTrackerJournal.EXTENSION);
+        Files.write(file, text.toString().getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static final class Interval {
+        final long startMs;
+        final long endMs;
+        final List<String> tags;
+
+        Interval(long startMs, long endMs, String... tags) {
+            this.startMs = startMs;
+            this.endMs = endMs;
+            this.tags = Arrays.asList(tags);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Interval)) {
+                return false;
+            }
+            final Interval other = (Interval) o;
+            return startMs == other.startMs && endMs == other.endMs && tags.equals(other.tags);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(startMs) * 31 + Long.hashCode(endMs);
+        }
+
+        @Override
+        public String toString() {
+            return startMs + "-" + endMs + tags;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the byte range reader of {@link TimeTrackerJournal}: wherever a journal is split,
+ * every record is read exactly once, by the range in which its line starts.
+ */
+public class TimeTrackerJournalTest {
+
+    /** Well-formed, malformed and oddly terminated lines, without a final newline. */
+    private static final String JOURNAL = "1000\t2000\n"
+            + "3000\t4500\tmodule:a\tbranch:x\n"
+            + "garbage\n"
+            + "\n"
+            + "5000\n"
+            + "7000\t6000\n"
+            + "-1\t5\n"
+            + "8000\t9000\r\n"
+            + "10000\t10000\ttask:b\n"
+            + "12\t3x\n"
+            + "123456789012\t123456789999\n"
+            + "20000\t20001";
+    private static final List<String> RECORDS = Arrays.asList(
+            "1000-2000", "3000-4500", "8000-9000", "10000-10000", "123456789012-123456789999", "20000-20001");
+
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("journal-test", TimeTrackerJournal.EXTENSION);
+        Files.write(file, JOURNAL.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    @Test
+    public void readWholeJournal() throws IOException {
+        assertEquals(RECORDS, read(0, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void everySplitReadsEveryRecordOnce() throws IOException {
+        final long size = Files.size(file);
+        for (long split = 0; split <= size; split++) {
+            final List<String> records = read(0, split);
+            records.addAll(read(split, size));
+            assertEquals("split at " + split, RECORDS, records);
+        }
+    }
+
+    @Test
+    public void randomSplitsReadEveryRecordOnce() throws IOException {
+        final long size = Files.size(file);
+        final Random random = new Random(7);
+        for (int run = 0; run < 1000; run++) {
+            final List<String> records = new ArrayList<>();
+            long from = 0;
+            while (from < size) {
+                final long to = Math.min(size, from + 1 + random.nextInt(40));
+                records.addAll(read(from, to));
+                from = to;
+            }
+            assertEquals("run " + run, RECORDS, records);
+        }
+    }
+
+    @Test
+    public void appendWritesTagsReadBackByReadTagged() throws IOException {
+        final Path appended = Files.createTempFile("journal-test", TimeTrackerJournal.EXTENSION);
+        try {
+            Files.delete(appended);
+            final TimeTrackerJournal journal = new TimeTrackerJournal(appended);
+            journal.append(1, 2, Arrays.asList("file:a\tb", "run:x\ny"));
+            journal.append(3, 4, new ArrayList<>());
+            final List<String> records = new ArrayList<>();
+            TimeTrackerJournal.readTagged(appended, (startMs, endMs, tags) -> records.add(startMs + "-" + endMs + tags));
+            assertEquals(Arrays.asList("1-2[file:a b, run:x y]", "3-4[]"), records);
+        } finally {
+            Files.deleteIfExists(appended);
+        }
+    }
+
+    private List<String> read(long from, long to) throws IOException {
+        final List<String> records = new ArrayList<>();
+        TimeTrackerJournal.read(file, from, to, (startMs, endMs) -> records.add(startMs + "-" + endMs));
+        return records;
+    }
+}
@@ -0,0 +1,113 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks {@link TimeTrackerReport#aggregate} against totals computed directly from the generated intervals,
+ * for chunk sizes from a few bytes to whole files.
+ */
+public class TimeTrackerReportTest {
+
+    /** Has a daylight saving switch, so some days are not 24 hours long. */
+    private static final ZoneId ZONE = ZoneId.of("Europe/Berlin");
+    private static final long HOUR_MS = 3_600_000L;
+
+    private Path root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("report-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void aggregateMatchesDirectSums() throws IOException {
+        final Map<String, Long> perUserMs = new TreeMap<>();
+        final Map<String, Long> perProjectMs = new TreeMap<>();
+        final Map<LocalDate, Long> perDayMs = new TreeMap<>();
+
+        final Random random = new Random(3);
+        final long firstMs = LocalDate.of(2026, 3, 25).atStartOfDay(ZONE).toInstant().toEpochMilli();
+        for (String user : Arrays.asList("alice", "bob")) {
+            for (String project : Arrays.asList("core", "ui", "docs")) {
+                final StringBuilder journal = new StringBuilder();
+                long timeMs = firstMs + random.nextInt(1000);
+                final int intervals = random.nextInt(200);
+                for (int i = 0; i < intervals; i++) {
+                    final long startMs = timeMs + random.nextInt((int) (6 * HOUR_MS));
+                    final long endMs = startMs + random.nextInt((int) (5 * HOUR_MS));
+                    journal.append(startMs).append('\t').append(endMs);
+                    if (random.nextBoolean()) {
+                        journal.append("\tmodule:").append(project);
+                    }
+                    journal.append('\n');
+                    if (random.nextInt(10) == 0) {
+                        journal.append("not a record\n");
+                    }
+                    timeMs = endMs;
+
+                    perUserMs.merge(user, endMs - startMs, Long::sum);
+                    perProjectMs.merge(user + "/" + project, endMs - startMs, Long::sum);
+                    addPerDay(perDayMs, startMs, endMs);
+                }
+                Files.createDirectories(root.resolve(user));
+                Files.write(root.resolve(user).resolve(project + TimeTrackerJournal.EXTENSION), journal.toString().getBytes());
+            }
+        }
+        Files.write(root.resolve("ignored.txt"), "1\t2\n".getBytes());
+
+        for (long chunkBytes : Arrays.asList(1L, 7L, 64L, 1000L, 1L << 30)) {
+            for (int threads : Arrays.asList(1, 4)) {
+                final TimeTrackerReport.Aggregate aggregate = TimeTrackerReport.aggregate(root, threads, ZONE, chunkBytes);
+                final String name = "chunk " + chunkBytes + ", threads " + threads;
+                assertEquals(name, perUserMs, aggregate.perUserMs);
+                assertEquals(name, perProjectMs, aggregate.perProjectMs);
+                assertEquals(name, perDayMs, aggregate.perDayMs);
+            }
+        }
+    }
+
+    @Test
+    public void journalsOutsideUserDirectoriesBelongToNoUser() throws IOException {
+        Files.write(root.resolve("solo" + TimeTrackerJournal.EXTENSION), "1000\t3000\n".getBytes());
+        final TimeTrackerReport.Aggregate aggregate = TimeTrackerReport.aggregate(root, 1, ZONE);
+        assertEquals(Collections.singletonMap("-", 2000L), aggregate.perUserMs);
+        assertEquals(Collections.singletonMap("-/solo", 2000L), aggregate.perProjectMs);
+    }
+
+    /** Splits at midnights, one day at a time. */
+    private static void addPerDay(Map<LocalDate, Long> perDayMs, long startMs, long endMs) {
+        while (startMs < endMs) {
+            final LocalDate day = Instant.ofEpochMilli(startMs).atZone(ZONE).toLocalDate();
+            final long dayEndMs = day.plusDays(1).atStartOfDay(ZONE).toInstant().toEpochMilli();
+            final long pieceEndMs = Math.min(endMs, dayEndMs);
+            perDayMs.merge(day, pieceEndMs - startMs, Long::sum);
+            startMs = pieceEndMs;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class TimeTrackerSessionIndexTest {
+
+    private static final ZoneId ZONE = ZoneId.of("UTC");
+
+    @Test
+    public void queriesSumMatchingSessions() {
+        final TimeTrackerSessionIndex index = new TimeTrackerSessionIndex(ZONE);
+        final long march = LocalDate.of(2026, 3, 2).atStartOfDay(ZONE).toInstant().toEpochMilli();
+        final long april = LocalDate.of(2026, 4, 2).atStartOfDay(ZONE).toInstant().toEpochMilli();
+        index.add(march, march + 100, Arrays.asList("module:a", "branch:x"));
+        index.add(march + 1000, march + 1300, Arrays.asList("module:b", "branch:x"));
+        index.add(april, april + 50, Collections.singletonList("module:a"));
+
+        assertEquals(100, index.sumDurationMs(TimeTrackerSessionIndex.and(
+                TimeTrackerSessionIndex.tag("module:a"), TimeTrackerSessionIndex.tag("branch:x"), TimeTrackerSessionIndex.tag("month:2026-03"))));
+        assertEquals(450, index.sumDurationMs(TimeTrackerSessionIndex.or(
+                TimeTrackerSessionIndex.tag("module:a"), TimeTrackerSessionIndex.tag("branch:x"))));
+        assertEquals(300, index.sumDurationMs(TimeTrackerSessionIndex.andNot(
+                TimeTrackerSessionIndex.tag("branch:x"), TimeTrackerSessionIndex.tag("module:a"))));
+        assertEquals(400, index.sumDurationMs(TimeTrackerSessionIndex.not(TimeTrackerSessionIndex.tag("day:2026-04-02"))));
+        assertEquals(0, index.sumDurationMs(TimeTrackerSessionIndex.tag("module:none")));
+    }
+
+    @Test
+    public void evaluateResultIsNotChangedByLaterSessions() {
+        final TimeTrackerSessionIndex index = new TimeTrackerSessionIndex(ZONE);
+        index.add(0, 10, Collections.singletonList("module:a"));
+        final TimeTrackerBitmap matching = index.evaluate(TimeTrackerSessionIndex.tag("module:a"));
+        index.add(20, 30, Collections.singletonList("module:a"));
+
+        assertEquals(1, matching.cardinality());
+        assertEquals(2, index.evaluate(TimeTrackerSessionIndex.tag("module:a")).cardinality());
+    }
+}
@@ -0,0 +1,173 @@
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.ToIntFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs {@link TimeTrackerSync} against a stub server on localhost.
+ */
+public class TimeTrackerSyncTest {
+
+    private static final long WAIT_MS = TimeUnit.SECONDS.toMillis(15);
+    private static final Pattern ID = Pattern.compile("\"id\":\"([^\"]+)\"");
+
+    private Path dir;
+    private Path outbox;
+    private ExecutorService executor;
+    private HttpServer server;
+    /** Decides the response status for a request body. */
+    private volatile ToIntFunction<String> respond = body -> 200;
+    private final List<Long> requestTimesMs = new CopyOnWriteArrayList<>();
+    private final List<String> acceptedIds = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("sync-test");
+        outbox = dir.resolve("project" + TimeTrackerSync.OUTBOX_EXTENSION);
+        executor = Executors.newSingleThreadExecutor();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            final String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            requestTimesMs.add(System.currentTimeMillis());
+            final int status = respond.applyAsInt(body);
+            if (status / 100 == 2) {
+                acceptedIds.addAll(ids(body));
+            }
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.stop(0);
+        executor.shutdownNow();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void batchIsAccepted() throws Exception {
+        final TimeTrackerSync sync = open();
+        sync.offer(1000, 2000);
+        sync.offer(3000, 4000);
+        waitFor(() -> acceptedIds.size() == 2);
+        sync.close();
+
+        assertEquals(Arrays.asList("p:1000", "p:3000"), acceptedIds);
+        assertEquals("", outboxText());
+    }
+
+    @Test
+    public void serverErrorBacksOff() throws Exception {
+        respond = body -> requestTimesMs.size() <= 1 ? 503 : 200;
+        final TimeTrackerSync sync = open();
+        sync.offer(1000, 2000);
+        waitFor(() -> acceptedIds.size() == 1);
+        sync.close();
+
+        assertEquals(2, requestTimesMs.size());
+        final long waitedMs = requestTimesMs.get(1) - requestTimesMs.get(0);
+        assertTrue("retried after " + waitedMs + " ms", waitedMs >= 1000);
+        assertEquals(Arrays.asList("p:1000"), acceptedIds);
+    }
+
+    @Test
+    public void rejectedSessionDoesNotBlockOthers() throws Exception {
+        respond = body -> ids(body).contains("p:666") ? 400 : 200;
+        final Path rejected = dir.resolve(outbox.getFileName() + TimeTrackerSync.REJECTED_EXTENSION);
+        Files.write(outbox, "p:1\t1\t2\np:666\t666\t667\np:3\t3\t4\n".getBytes(StandardCharsets.UTF_8));
+        final TimeTrackerSync sync = open();
+        waitFor(() -> acceptedIds.size() == 2 && Files.exists(rejected));
+        sync.offer(5000, 6000);
+        waitFor(() -> acceptedIds.size() == 3);
+        sync.close();
+
+        assertEquals(Arrays.asList("p:1", "p:3", "p:5000"), acceptedIds);
+        assertEquals("p:666\t666\t667\n", new String(Files.readAllBytes(rejected), StandardCharsets.UTF_8));
+        assertEquals("", outboxText());
+    }
+
+    @Test
+    public void outboxSurvivesCloseAndReopen() throws Exception {
+        respond = body -> 503;
+        final TimeTrackerSync offline = open();
+        offline.offer(1000, 2000);
+        offline.offer(3000, 4000);
+        waitFor(() -> !requestTimesMs.isEmpty());
+        offline.close();
+        assertEquals("p:1000\t1000\t2000\np:3000\t3000\t4000\n", outboxText());
+
+        respond = body -> 200;
+        final TimeTrackerSync online = open();
+        waitFor(() -> acceptedIds.size() == 2);
+        online.close();
+
+        assertEquals(Arrays.asList("p:1000", "p:3000"), acceptedIds);
+        assertEquals("", outboxText());
+    }
+
+    @Test
+    public void malformedOutboxLinesAreSkipped() throws Exception {
+        Files.write(outbox, "p:1\t1\t2\ngarbage\np:2\t2\n\u00ff\u00fe\np:3\t3\t4".getBytes(StandardCharsets.ISO_8859_1));
+        final TimeTrackerSync sync = open();
+        waitFor(() -> acceptedIds.size() == 2);
+        sync.close();
+
+        assertEquals(Arrays.asList("p:1", "p:3"), acceptedIds);
+    }
+
+    private TimeTrackerSync open() throws IOException {
+        final URL endpoint = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/sessions");
+        return new TimeTrackerSync("p", endpoint, outbox, executor);
+    }
+
+    private String outboxText() throws IOException {
+        return Files.exists(outbox) ? new String(Files.readAllBytes(outbox), StandardCharsets.UTF_8) : "";
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        final long deadlineMs = System.currentTimeMillis() + WAIT_MS;
+        while (!condition.getAsBoolean()) {
+            assertTrue("timed out", System.currentTimeMillis() < deadlineMs);
+            Thread.sleep(10);
+        }
+    }
+
+    private static List<String> ids(String body) {
+        final List<String> ids = new ArrayList<>();
+        final Matcher matcher = ID.matcher(body);
+        while (matcher.find()) {
+            ids.add(matcher.group(1));
+        }
+        return ids;
+    }
+}